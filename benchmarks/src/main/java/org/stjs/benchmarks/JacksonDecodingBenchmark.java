@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.benchmarks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stjs.javascript.Array;
+import org.stjs.javascript.Map;
+import org.stjs.server.json.jackson.STJSModule;
+
+/**
+ * compares the decoding with Jackson of the server side {@link Array} and {@link Map} (through the STJS module) with
+ * the decoding of the same JSON as a plain {@link List} and {@link HashMap}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JacksonDecodingBenchmark {
+	private static final TypeReference<Array<Integer>> ARRAY_TYPE = new TypeReference<Array<Integer>>() {
+		// type capture
+	};
+	private static final TypeReference<List<Integer>> LIST_TYPE = new TypeReference<List<Integer>>() {
+		// type capture
+	};
+	private static final TypeReference<Map<String, Integer>> MAP_TYPE = new TypeReference<Map<String, Integer>>() {
+		// type capture
+	};
+	private static final TypeReference<HashMap<String, Integer>> HASH_MAP_TYPE =
+			new TypeReference<HashMap<String, Integer>>() {
+				// type capture
+			};
+
+	@Param({ "10000", "100000", "1000000" })
+	private int size;
+
+	private ObjectMapper mapper;
+	private String arrayJson;
+	private String mapJson;
+
+	@Setup
+	public void setup() {
+		mapper = new ObjectMapper();
+		mapper.registerModule(STJSModule.getModule());
+
+		StringBuilder array = new StringBuilder("[");
+		StringBuilder map = new StringBuilder("{");
+		for (int i = 0; i < size; ++i) {
+			if (i != 0) {
+				array.append(',');
+				map.append(',');
+			}
+			array.append(i);
+			map.append("\"k").append(i).append("\":").append(i);
+		}
+		arrayJson = array.append(']').toString();
+		mapJson = map.append('}').toString();
+	}
+
+	@Benchmark
+	public Array<Integer> decodeArray() throws IOException {
+		return mapper.readValue(arrayJson, ARRAY_TYPE);
+	}
+
+	@Benchmark
+	public List<Integer> decodeList() throws IOException {
+		return mapper.readValue(arrayJson, LIST_TYPE);
+	}
+
+	@Benchmark
+	public Map<String, Integer> decodeMap() throws IOException {
+		return mapper.readValue(mapJson, MAP_TYPE);
+	}
+
+	@Benchmark
+	public HashMap<String, Integer> decodeHashMap() throws IOException {
+		return mapper.readValue(mapJson, HASH_MAP_TYPE);
+	}
+}
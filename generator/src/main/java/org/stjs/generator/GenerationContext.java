@@ -28,12 +28,19 @@ public class GenerationContext {
 
 	private final File inputFile;
 
+	private final File sourceFolder;
+
 	private final GeneratorConfiguration configuration;
 
 	private ClassOrInterfaceDeclaration currentType;
 
 	public GenerationContext(File inputFile, GeneratorConfiguration configuration) {
+		this(inputFile, null, configuration);
+	}
+
+	public GenerationContext(File inputFile, File sourceFolder, GeneratorConfiguration configuration) {
 		this.inputFile = inputFile;
+		this.sourceFolder = sourceFolder;
 		this.configuration = configuration;
 	}
 
@@ -41,6 +48,13 @@ public class GenerationContext {
 		return inputFile;
 	}
 
+	/**
+	 * @return the folder containing the sources of the project, or null if it is not known
+	 */
+	public File getSourceFolder() {
+		return sourceFolder;
+	}
+
 	public GeneratorConfiguration getConfiguration() {
 		return configuration;
 	}
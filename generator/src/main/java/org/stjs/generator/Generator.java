@@ -94,7 +94,7 @@ public class Generator {
 
 		File inputFile = getInputFile(sourceFolder, className);
 		File outputFile = getOutputFile(generationFolder.getAbsolutePath(), className);
-		GenerationContext context = new GenerationContext(inputFile, configuration);
+		GenerationContext context = new GenerationContext(inputFile, sourceFolder, configuration);
 
 		CompilationUnit cu = parseAndResolve(classLoaderWrapper, inputFile, context, configuration.getSourceEncoding());
 
@@ -23,14 +23,19 @@ public class GeneratorConfiguration {
 	private final Set<String> allowedJavaLangClasses;
 	private final boolean generateArrayHasOwnProperty;
 	private final boolean generateSourceMap;
+	private final boolean inlineConstants;
+	private final boolean aliasNamespaces;
 	private final String sourceEncoding;
 
 	GeneratorConfiguration(Collection<String> allowedPackages, Set<String> allowedJavaLangClasses,
-			boolean generateArrayHasOwnProperty, boolean generateSourceMap, String sourceEncoding) {
+			boolean generateArrayHasOwnProperty, boolean generateSourceMap, boolean inlineConstants, boolean aliasNamespaces,
+			String sourceEncoding) {
 		this.allowedPackages = allowedPackages;
 		this.allowedJavaLangClasses = allowedJavaLangClasses;
 		this.generateArrayHasOwnProperty = generateArrayHasOwnProperty;
 		this.generateSourceMap = generateSourceMap;
+		this.inlineConstants = inlineConstants;
+		this.aliasNamespaces = aliasNamespaces;
 		this.sourceEncoding = sourceEncoding;
 	}
 
@@ -54,6 +59,21 @@ public class GeneratorConfiguration {
 		return generateSourceMap;
 	}
 
+	/**
+	 * @return true if the compile-time constants should be inlined and the constant expressions folded in the generated
+	 *         code
+	 */
+	public boolean isInlineConstants() {
+		return inlineConstants;
+	}
+
+	/**
+	 * @return true if the generated files should access the namespaces through local aliases bound once per file
+	 */
+	public boolean isAliasNamespaces() {
+		return aliasNamespaces;
+	}
+
 	public String getSourceEncoding() {
 		return sourceEncoding;
 	}
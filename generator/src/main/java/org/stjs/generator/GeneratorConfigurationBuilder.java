@@ -29,6 +29,8 @@ public class GeneratorConfigurationBuilder {
 	private final Set<String> allowedJavaLangClasses = new HashSet<String>();
 	private boolean generateArrayHasOwnProperty = true;
 	private boolean generateSourceMap;
+	private boolean inlineConstants;
+	private boolean aliasNamespaces;
 	private String sourceEncoding = Charset.defaultCharset().name();
 
 	public GeneratorConfigurationBuilder allowedPackage(String packageName) {
@@ -61,6 +63,16 @@ public class GeneratorConfigurationBuilder {
 		return this;
 	}
 
+	public GeneratorConfigurationBuilder inlineConstants(boolean b) {
+		inlineConstants = b;
+		return this;
+	}
+
+	public GeneratorConfigurationBuilder aliasNamespaces(boolean b) {
+		aliasNamespaces = b;
+		return this;
+	}
+
 	public GeneratorConfigurationBuilder sourceEncoding(String sourceEncoding) {
 		this.sourceEncoding = sourceEncoding;
 		return this;
@@ -87,7 +99,7 @@ public class GeneratorConfigurationBuilder {
 		allowedPackages.add("java.lang");
 
 		return new GeneratorConfiguration(allowedPackages, allowedJavaLangClasses, generateArrayHasOwnProperty,
-				generateSourceMap, sourceEncoding);
+				generateSourceMap, inlineConstants, aliasNamespaces, sourceEncoding);
 	}
 
 }
@@ -0,0 +1,50 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.generator.name;
+
+import java.util.Map;
+
+import org.stjs.generator.type.ClassWrapper;
+import org.stjs.generator.type.TypeWrapper;
+import org.stjs.generator.utils.ClassUtils;
+
+/**
+ * this name provider replaces the namespace of the types by a local alias when one was declared for it. The types
+ * whose namespace has no alias and the bridges keep their fully qualified name.
+ */
+public class NamespaceAliasNameProvider extends DefaultNameProvider {
+	private final Map<String, String> aliases;
+
+	/**
+	 * @param aliases
+	 *            the local alias of each namespace
+	 */
+	public NamespaceAliasNameProvider(Map<String, String> aliases) {
+		this.aliases = aliases;
+	}
+
+	@Override
+	public String getTypeName(TypeWrapper typeWrapper) {
+		if (typeWrapper instanceof ClassWrapper && !ClassUtils.isBridge(((ClassWrapper) typeWrapper).getClazz())) {
+			String namespace = ClassUtils.getNamespace(typeWrapper);
+			String alias = namespace == null ? null : aliases.get(namespace);
+			if (alias != null) {
+				return alias + "." + ((ClassWrapper) typeWrapper).getExternalName();
+			}
+		}
+		return super.getTypeName(typeWrapper);
+	}
+}
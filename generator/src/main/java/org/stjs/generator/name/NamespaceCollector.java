@@ -0,0 +1,75 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.generator.name;
+
+import japa.parser.ast.Node;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.stjs.generator.ast.ASTNodeData;
+import org.stjs.generator.scope.ClassScope;
+import org.stjs.generator.type.ClassWrapper;
+import org.stjs.generator.type.FieldWrapper;
+import org.stjs.generator.type.TypeWrapper;
+import org.stjs.generator.utils.ClassUtils;
+import org.stjs.generator.visitor.ForEachNodeVisitor;
+
+/**
+ * This visitor collects the namespaces of all the types (that are not bridges) referenced by the visited nodes. It
+ * presumes the {@link org.stjs.generator.scope.ScopeBuilder} previously visited the tree.
+ */
+public class NamespaceCollector extends ForEachNodeVisitor<Void> {
+	private final Set<String> namespaces = new TreeSet<String>();
+
+	@Override
+	protected void before(Node node, Void arg) {
+		if (!(node.getData() instanceof ASTNodeData)) {
+			return;
+		}
+		ASTNodeData data = (ASTNodeData) node.getData();
+		addNamespace(data.getResolvedType());
+		if (data.getResolvedVariable() instanceof FieldWrapper) {
+			addNamespace(((FieldWrapper) data.getResolvedVariable()).getOwnerType());
+		}
+		if (data.getResolvedMethod() != null) {
+			addNamespace(data.getResolvedMethod().getOwnerType());
+		}
+		if (data.getScope() instanceof ClassScope) {
+			ClassWrapper clazz = ((ClassScope) data.getScope()).getClazz();
+			if (clazz != null) {
+				addNamespace(clazz);
+				addNamespace(clazz.getSuperclass().getOrNull());
+			}
+		}
+	}
+
+	private void addNamespace(TypeWrapper type) {
+		if (type instanceof ClassWrapper && !ClassUtils.isBridge(((ClassWrapper) type).getClazz())) {
+			String namespace = ClassUtils.getNamespace(type);
+			if (namespace != null) {
+				namespaces.add(namespace);
+			}
+		}
+	}
+
+	/**
+	 * @return the namespaces found, in alphabetical order
+	 */
+	public Set<String> getNamespaces() {
+		return namespaces;
+	}
+}
@@ -1,9 +1,15 @@
 package org.stjs.generator.sourcemap;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -24,6 +30,22 @@ public class JavascriptToJava {
 	private final static int STACKTRACE_GROUP_METHOD = 2;
 	private final static int STACKTRACE_GROUP_LOCATION = 3;
 
+	private final static int MAX_CACHED_RESOURCES = 512;
+
+	/**
+	 * the parsed source maps and class names, keyed by the URL of their resource. They are shared by all the instances,
+	 * as one instance is usually built for each failed test. The least recently used ones are evicted first.
+	 */
+	private final static Map<String, CachedResource> cachedResources = Collections
+			.synchronizedMap(new LinkedHashMap<String, CachedResource>(64, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CachedResource> eldest) {
+					return size() > MAX_CACHED_RESOURCES;
+				}
+			});
+
 	private final ClassLoader classLoader;
 
 	public JavascriptToJava(ClassLoader testClassLoader) {
@@ -31,16 +53,34 @@ public class JavascriptToJava {
 	}
 
 	public int getJavaLine(String path, int lineNumber) {
+		return getJavaLine(getSourceMapping(path), lineNumber);
+	}
+
+	private static int getJavaLine(SourceMapping mapping, int lineNumber) {
+		if (mapping == null) {
+			return lineNumber;
+		}
+		return mapping.getMappingForLine(lineNumber, 1).getLineNumber();
+	}
+
+	/**
+	 * @return the source map of the given Javascript file, or null if it has none
+	 */
+	private SourceMapping getSourceMapping(String path) {
 		String sourceMapFile = path.replaceAll("\\.js$", ".map");
 		URL url = classLoader.getResource(sourceMapFile.substring(1));
 		if (url == null) {
-			return lineNumber;
+			return null;
+		}
+		CachedResource cached = getCachedResource(url);
+		if (cached != null) {
+			return (SourceMapping) cached.value;
 		}
-		String contents;
 		try {
-			contents = Resources.toString(url, Charsets.UTF_8);
+			String contents = Resources.toString(url, Charsets.UTF_8);
 			SourceMapping mapping = SourceMapConsumerFactory.parse(contents);
-			return mapping.getMappingForLine(lineNumber, 1).getLineNumber();
+			putCachedResource(url, mapping);
+			return mapping;
 		}
 		catch (IOException e) {
 			throw new STJSRuntimeException(e);
@@ -51,15 +91,22 @@ public class JavascriptToJava {
 	}
 
 	private String getClassName(String propertiesFile) {
+		URL url = classLoader.getResource(propertiesFile.substring(1));
+		if (url == null) {
+			return null;
+		}
+		CachedResource cached = getCachedResource(url);
+		if (cached != null) {
+			return (String) cached.value;
+		}
 		InputStream in = null;
 		try {
-			in = classLoader.getResourceAsStream(propertiesFile.substring(1));
-			if (in == null) {
-				return null;
-			}
+			in = url.openStream();
 			Properties p = new Properties();
 			p.load(in);
-			return p.getProperty(STJSClass.CLASS_PROP);
+			String className = p.getProperty(STJSClass.CLASS_PROP);
+			putCachedResource(url, className);
+			return className;
 		}
 		catch (IOException e) {
 			throw new STJSRuntimeException(e);
@@ -71,14 +118,32 @@ public class JavascriptToJava {
 		}
 	}
 
+	/**
+	 * @return the cached value for the given resource, or null if it was not loaded yet or if it was modified since
+	 */
+	private static CachedResource getCachedResource(URL url) {
+		CachedResource cached = cachedResources.get(url.toExternalForm());
+		if (cached == null || cached.isModified()) {
+			return null;
+		}
+		return cached;
+	}
+
+	private static void putCachedResource(URL url, Object value) {
+		// if two threads load the same resource at the same time, the last one wins. Both values are identical
+		cachedResources.put(url.toExternalForm(), new CachedResource(url, value));
+	}
+
 	/**
 	 * // the format is the one given by stacktrace.js: // <br>
 	 * at prototype.method (url) <br>
 	 * where url is http://localhost:xxxx/org/stjs/TestClass.js:row:col
 	 * @param stacktraceLine
+	 * @param files
+	 *            the files already resolved for the previous lines of the same stack trace
 	 * @return
 	 */
-	private StackTraceElement buildStacktraceElement(String stacktraceLine) {
+	private StackTraceElement buildStacktraceElement(String stacktraceLine, Map<String, JavascriptFile> files) {
 
 		Matcher m = STACKTRACE_JS_PATTERN.matcher(stacktraceLine);
 		if (!m.matches()) {
@@ -97,14 +162,20 @@ public class JavascriptToJava {
 			String jsSourceFile = fileParts[0];
 			String sourceFile = jsSourceFile.replaceAll("\\.js$", ".java");
 
-			// java line
 			String cleanJsPath = url.getPath().split(":")[0];
+			JavascriptFile jsFile = files.get(cleanJsPath);
+			if (jsFile == null) {
+				String stjsPropertyFile = cleanJsPath.replaceAll("\\.js$", ".stjs");
+				jsFile = new JavascriptFile(getSourceMapping(cleanJsPath), getClassName(stjsPropertyFile));
+				files.put(cleanJsPath, jsFile);
+			}
+
+			// java line
 			int jsLineNumber = Integer.valueOf(fileParts[1]);
-			int line = getJavaLine(cleanJsPath, jsLineNumber);
-			String stjsPropertyFile = cleanJsPath.replaceAll("\\.js$", ".stjs");
+			int line = getJavaLine(jsFile.mapping, jsLineNumber);
 
 			// class name
-			String className = getClassName(stjsPropertyFile);
+			String className = jsFile.className;
 			if (className == null) {
 				className = "<Unknown class>";
 				sourceFile = jsSourceFile;
@@ -126,7 +197,8 @@ public class JavascriptToJava {
 	 *  at prototype.method (url)
 	 * </pre>
 	 * 
-	 * where url is in the form of http://localhost:xxxx/org/stjs/TestClass.js:row:col
+	 * where url is in the form of http://localhost:xxxx/org/stjs/TestClass.js:row:col. The source map and the class
+	 * name of each Javascript file are looked up only once, even if the file appears in several lines.
 	 * @param javascriptStacktrace
 	 * @return
 	 */
@@ -136,10 +208,61 @@ public class JavascriptToJava {
 		String[] lines = javascriptStacktrace.split(lineSeparator);
 
 		// first line is the message
+		Map<String, JavascriptFile> files = new HashMap<String, JavascriptFile>();
 		StackTraceElement[] stackTrace = new StackTraceElement[lines.length];
 		for (int i = 0; i < lines.length; ++i) {
-			stackTrace[i] = buildStacktraceElement(lines[i]);
+			stackTrace[i] = buildStacktraceElement(lines[i], files);
 		}
 		return stackTrace;
 	}
+
+	/**
+	 * the source map and the class name of a Javascript file, both may be null
+	 */
+	private static class JavascriptFile {
+		private final SourceMapping mapping;
+		private final String className;
+
+		JavascriptFile(SourceMapping mapping, String className) {
+			this.mapping = mapping;
+			this.className = className;
+		}
+	}
+
+	/**
+	 * a value built from a resource. If the resource is a file, the value is built again when the file is modified
+	 * (i.e. the Javascript is generated again)
+	 */
+	private static class CachedResource {
+		private final Object value;
+		private final File file;
+		private final long lastModified;
+		private final long length;
+
+		CachedResource(URL url, Object value) {
+			this.value = value;
+			this.file = toFile(url);
+			this.lastModified = file != null ? file.lastModified() : 0;
+			this.length = file != null ? file.length() : 0;
+		}
+
+		private static File toFile(URL url) {
+			if (!"file".equals(url.getProtocol())) {
+				return null;
+			}
+			try {
+				return new File(url.toURI());
+			}
+			catch (URISyntaxException e) {
+				return null;
+			}
+			catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+
+		boolean isModified() {
+			return file != null && (file.lastModified() != lastModified || file.length() != length);
+		}
+	}
 }
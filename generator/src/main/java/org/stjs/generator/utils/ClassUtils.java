@@ -93,6 +93,13 @@ public final class ClassUtils {
 		return BASIC_TYPE_NAMES.contains(typeName);
 	}
 
+	/**
+	 * @return true if the given type is a Java primitive type (i.e. its value cannot be null)
+	 */
+	public static boolean isPrimitiveType(TypeWrapper type) {
+		return type instanceof ClassWrapper && ((ClassWrapper) type).getClazz().isPrimitive();
+	}
+
 	public static boolean isIntegerType(TypeWrapper type) {
 		String typeName = type.toString();
 		return INTEGER_TYPE_NAMES.contains(typeName);
@@ -0,0 +1,632 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.generator.writer;
+
+import static org.stjs.generator.ast.ASTNodeData.resolvedType;
+import static org.stjs.generator.ast.ASTNodeData.resolvedVariable;
+import japa.parser.JavaParser;
+import japa.parser.ParseException;
+import japa.parser.ast.CompilationUnit;
+import japa.parser.ast.body.BodyDeclaration;
+import japa.parser.ast.body.FieldDeclaration;
+import japa.parser.ast.body.TypeDeclaration;
+import japa.parser.ast.body.VariableDeclarator;
+import japa.parser.ast.expr.BinaryExpr;
+import japa.parser.ast.expr.BooleanLiteralExpr;
+import japa.parser.ast.expr.CastExpr;
+import japa.parser.ast.expr.CharLiteralExpr;
+import japa.parser.ast.expr.DoubleLiteralExpr;
+import japa.parser.ast.expr.EnclosedExpr;
+import japa.parser.ast.expr.Expression;
+import japa.parser.ast.expr.FieldAccessExpr;
+import japa.parser.ast.expr.IntegerLiteralExpr;
+import japa.parser.ast.expr.LongLiteralExpr;
+import japa.parser.ast.expr.NameExpr;
+import japa.parser.ast.expr.StringLiteralExpr;
+import japa.parser.ast.expr.UnaryExpr;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantObject;
+import org.apache.bcel.classfile.ConstantValue;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.JavaClass;
+import org.stjs.generator.GenerationContext;
+import org.stjs.generator.type.ClassWrapper;
+import org.stjs.generator.type.FieldWrapper;
+import org.stjs.generator.type.TypeWrapper;
+import org.stjs.generator.utils.ClassUtils;
+import org.stjs.generator.variable.Variable;
+import org.stjs.generator.visitor.SetParentVisitor;
+
+import com.google.common.io.Closeables;
+
+/**
+ * This class evaluates at generation time the expressions that are made only of literals and of compile-time constants
+ * (i.e. static final fields of a primitive or String type initialized with a constant expression). The value of a
+ * constant field is taken from the ConstantValue attribute the Java compiler writes in the class file, so the owner
+ * class is never initialized. <br>
+ * The operators are evaluated using the Javascript semantics of the code that would be otherwise generated (all the
+ * numbers are doubles, the integer division and the casts to an integer type truncate to 32 bits). As the Java value
+ * of a constant field may differ from the value its generated initializer computes (e.g. 0xFFFFFFFF is -1 in Java, but
+ * 4294967295 in Javascript), a field is folded only if its initializer, found in the sources of the project, gives the
+ * same value in Javascript. The long constants, NaN and the infinite values are never folded, and the characters only
+ * when used alone. Only the fields accessed by their simple name or through a type name are folded, as evaluating an
+ * instance expression may have side effects.
+ */
+public class ConstantFolder {
+	private static final double TWO_POW_32 = 4294967296.0;
+	private static final double MAX_SAFE_INTEGER = 9007199254740992.0;
+
+	private final Map<Class<?>, Map<String, Object>> constantsByClass = new HashMap<Class<?>, Map<String, Object>>();
+	private final Map<String, CompilationUnit> parsedUnits = new HashMap<String, CompilationUnit>();
+
+	private CompilationUnit currentUnit;
+	private GenerationContext context;
+
+	/**
+	 * sets the compilation unit being generated. The initializers of the constant fields declared in other compilation
+	 * units are read from the source folder of the given context.
+	 */
+	public void setCompilationUnit(CompilationUnit unit, GenerationContext generationContext) {
+		this.currentUnit = unit;
+		this.context = generationContext;
+	}
+
+	/**
+	 * @return the value of the given expression if it is a constant expression that can be folded, or null otherwise.
+	 *         The value is either a Double, a String, a Boolean or a Character (only for character constant fields)
+	 */
+	public Object evaluate(Expression expr) {
+		if (expr instanceof IntegerLiteralExpr || expr instanceof LongLiteralExpr) {
+			return parseInteger(((StringLiteralExpr) expr).getValue());
+		}
+		if (expr instanceof DoubleLiteralExpr) {
+			return parseDouble(((DoubleLiteralExpr) expr).getValue());
+		}
+		if (expr instanceof BooleanLiteralExpr) {
+			return ((BooleanLiteralExpr) expr).getValue();
+		}
+		if (expr instanceof StringLiteralExpr && expr.getClass() == StringLiteralExpr.class) {
+			return unescape(((StringLiteralExpr) expr).getValue());
+		}
+		if (expr instanceof EnclosedExpr) {
+			return evaluate(((EnclosedExpr) expr).getInner());
+		}
+		if (expr instanceof NameExpr) {
+			return getConstantValue(resolvedVariable(expr));
+		}
+		if (expr instanceof FieldAccessExpr) {
+			return isTypeName(((FieldAccessExpr) expr).getScope()) ? getConstantValue(resolvedVariable(expr)) : null;
+		}
+		if (expr instanceof UnaryExpr) {
+			return evaluateUnary((UnaryExpr) expr);
+		}
+		if (expr instanceof BinaryExpr) {
+			return evaluateBinary((BinaryExpr) expr);
+		}
+		if (expr instanceof CastExpr) {
+			return evaluateCast((CastExpr) expr);
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if the expression is the name of a type (simple, qualified or inner) and not a variable
+	 */
+	private static boolean isTypeName(Expression expr) {
+		return (expr instanceof NameExpr || expr instanceof FieldAccessExpr) && resolvedVariable(expr) == null
+				&& resolvedType(expr) != null;
+	}
+
+	/**
+	 * @return the value of the given variable if it's a compile-time constant field of a class that is not a bridge, or
+	 *         null otherwise
+	 */
+	public Object getConstantValue(Variable variable) {
+		if (!(variable instanceof FieldWrapper)) {
+			return null;
+		}
+		FieldWrapper field = (FieldWrapper) variable;
+		if (!Modifier.isStatic(field.getModifiers()) || !Modifier.isFinal(field.getModifiers())
+				|| !(field.getOwnerType() instanceof ClassWrapper)) {
+			return null;
+		}
+		Class<?> ownerClass = ((ClassWrapper) field.getOwnerType()).getClazz();
+		if (ClassUtils.isBridge(ownerClass)) {
+			// the Java value of a bridge's constant is not necessarily the one of the Javascript library
+			return null;
+		}
+		Object value = getConstants(ownerClass).get(field.getName());
+		if (value == null) {
+			return null;
+		}
+		Expression initializer = getInitializer(ownerClass, field.getName());
+		if (initializer == null) {
+			return null;
+		}
+		if (value instanceof Character) {
+			return initializer instanceof CharLiteralExpr ? value : null;
+		}
+		// the generated initializer must give the same value as the Java compiler
+		return value.equals(evaluate(initializer)) ? value : null;
+	}
+
+	/**
+	 * @return the initializer of the given static field, as written in the sources of the project, or null if it is
+	 *         not found
+	 */
+	private Expression getInitializer(Class<?> clazz, String fieldName) {
+		List<String> typeNames = new LinkedList<String>();
+		Class<?> topLevelClass = clazz;
+		for (Class<?> c = clazz; c != null; c = c.getEnclosingClass()) {
+			if (c.getSimpleName().isEmpty()) {
+				// anonymous and local classes cannot be found by name
+				return null;
+			}
+			typeNames.add(0, c.getSimpleName());
+			topLevelClass = c;
+		}
+		CompilationUnit unit = getCompilationUnit(topLevelClass);
+		if (unit == null) {
+			return null;
+		}
+		List<? extends BodyDeclaration> members = unit.getTypes();
+		TypeDeclaration type = null;
+		for (String typeName : typeNames) {
+			type = findType(members, typeName);
+			if (type == null) {
+				return null;
+			}
+			members = type.getMembers();
+		}
+		if (members == null) {
+			return null;
+		}
+		for (BodyDeclaration member : members) {
+			if (member instanceof FieldDeclaration) {
+				for (VariableDeclarator var : ((FieldDeclaration) member).getVariables()) {
+					if (var.getId().getName().equals(fieldName)) {
+						return var.getInit();
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private static TypeDeclaration findType(List<? extends BodyDeclaration> declarations, String name) {
+		if (declarations != null) {
+			for (BodyDeclaration declaration : declarations) {
+				if (declaration instanceof TypeDeclaration && ((TypeDeclaration) declaration).getName().equals(name)) {
+					return (TypeDeclaration) declaration;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the compilation unit declaring the given top level class: either the one being generated, or the one
+	 *         parsed from the source folder. The expressions of the latter are not resolved, so its initializers are
+	 *         folded only if they contain no field.
+	 */
+	private CompilationUnit getCompilationUnit(Class<?> topLevelClass) {
+		if (currentUnit != null && isDeclaredIn(currentUnit, topLevelClass)) {
+			return currentUnit;
+		}
+		if (parsedUnits.containsKey(topLevelClass.getName())) {
+			return parsedUnits.get(topLevelClass.getName());
+		}
+		CompilationUnit unit = parse(topLevelClass);
+		parsedUnits.put(topLevelClass.getName(), unit);
+		return unit;
+	}
+
+	private static boolean isDeclaredIn(CompilationUnit unit, Class<?> topLevelClass) {
+		String packageName = unit.getPackage() == null ? "" : unit.getPackage().getName().toString();
+		String simpleName = topLevelClass.getSimpleName();
+		String className = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		return className.equals(topLevelClass.getName()) && findType(unit.getTypes(), simpleName) != null;
+	}
+
+	private CompilationUnit parse(Class<?> topLevelClass) {
+		if (context == null || context.getSourceFolder() == null) {
+			return null;
+		}
+		File sourceFile =
+				new File(context.getSourceFolder(), topLevelClass.getName().replace('.', File.separatorChar) + ".java");
+		if (!sourceFile.exists()) {
+			return null;
+		}
+		InputStream in = null;
+		try {
+			in = new FileInputStream(sourceFile);
+			CompilationUnit unit = JavaParser.parse(in, context.getConfiguration().getSourceEncoding());
+			unit.accept(new SetParentVisitor(), context);
+			return unit;
+		}
+		catch (IOException e) {
+			// the source cannot be read - simply don't inline its constants
+			return null;
+		}
+		catch (ParseException e) {
+			return null;
+		}
+		finally {
+			Closeables.closeQuietly(in);
+		}
+	}
+
+	private Map<String, Object> getConstants(Class<?> clazz) {
+		Map<String, Object> constants = constantsByClass.get(clazz);
+		if (constants == null) {
+			constants = readConstants(clazz);
+			constantsByClass.put(clazz, constants);
+		}
+		return constants;
+	}
+
+	private Map<String, Object> readConstants(Class<?> clazz) {
+		JavaClass javaClass;
+		try {
+			javaClass = Repository.lookupClass(clazz);
+		}
+		catch (ClassNotFoundException e) {
+			// no class file available - simply don't inline anything
+			return Collections.emptyMap();
+		}
+		Map<String, Object> constants = new HashMap<String, Object>();
+		for (Field f : javaClass.getFields()) {
+			ConstantValue constantValue = f.getConstantValue();
+			if (constantValue == null || !f.isStatic()) {
+				continue;
+			}
+			Constant c = javaClass.getConstantPool().getConstant(constantValue.getConstantValueIndex());
+			if (c instanceof ConstantObject) {
+				Object value = toConstantValue(f.getSignature(), ((ConstantObject) c).getConstantValue(javaClass.getConstantPool()));
+				if (value != null) {
+					constants.put(f.getName(), value);
+				}
+			}
+		}
+		return constants;
+	}
+
+	private Object toConstantValue(String signature, Object value) {
+		if ("J".equals(signature)) {
+			// the longs are doubles in Javascript, and their operators truncate them to 32 bits
+			return null;
+		}
+		if ("Z".equals(signature)) {
+			return ((Number) value).intValue() != 0;
+		}
+		if ("C".equals(signature)) {
+			return (char) ((Number) value).intValue();
+		}
+		if (value instanceof Float) {
+			// keep the value as written in the source, as for the generated field initializer
+			return checkNumber(Double.parseDouble(value.toString()));
+		}
+		if (value instanceof Number) {
+			return checkNumber(((Number) value).doubleValue());
+		}
+		return value;
+	}
+
+	private Object evaluateUnary(UnaryExpr n) {
+		Object value = evaluate(n.getExpr());
+		switch (n.getOperator()) {
+			case positive:
+				return value instanceof Double ? value : null;
+			case negative:
+				return value instanceof Double ? checkNumber(-(Double) value) : null;
+			case inverse:
+				return value instanceof Double ? (double) ~toInt32((Double) value) : null;
+			case not:
+				return value instanceof Boolean ? !(Boolean) value : null;
+			default:
+				return null;
+		}
+	}
+
+	private Object evaluateCast(CastExpr n) {
+		Object value = evaluate(n.getExpr());
+		if (!(value instanceof Double || value instanceof String || value instanceof Boolean)) {
+			return null;
+		}
+		String typeName = n.getType().toString();
+		if (ClassUtils.isIntegerType(n.getType())) {
+			return value instanceof Double ? (double) toInt32((Double) value) : null;
+		}
+		if ("char".equals(typeName) || "Character".equals(typeName)) {
+			return null;
+		}
+		// the other casts are not generated
+		return value;
+	}
+
+	@SuppressWarnings({ "PMD.CyclomaticComplexity", "PMD.NPathComplexity" })
+	private Object evaluateBinary(BinaryExpr n) {
+		Object left = evaluate(n.getLeft());
+		if (left == null) {
+			return null;
+		}
+		Object right = evaluate(n.getRight());
+		if (right == null) {
+			return null;
+		}
+		if (left instanceof Character || right instanceof Character) {
+			return null;
+		}
+		if (left instanceof Boolean && right instanceof Boolean) {
+			return evaluateBoolean(n.getOperator(), (Boolean) left, (Boolean) right);
+		}
+		if (left instanceof String || right instanceof String) {
+			return evaluateString(n.getOperator(), left, right);
+		}
+		if (left instanceof Double && right instanceof Double) {
+			return evaluateNumber(n, (Double) left, (Double) right);
+		}
+		return null;
+	}
+
+	private Object evaluateBoolean(BinaryExpr.Operator op, boolean left, boolean right) {
+		switch (op) {
+			case and:
+				return left && right;
+			case or:
+				return left || right;
+			case equals:
+				return left == right;
+			case notEquals:
+				return left != right;
+			default:
+				// &, | and ^ return numbers in Javascript
+				return null;
+		}
+	}
+
+	private Object evaluateString(BinaryExpr.Operator op, Object left, Object right) {
+		if (op == BinaryExpr.Operator.plus) {
+			String leftString = toJavascriptString(left);
+			String rightString = toJavascriptString(right);
+			return leftString == null || rightString == null ? null : leftString + rightString;
+		}
+		if (left instanceof String && right instanceof String) {
+			if (op == BinaryExpr.Operator.equals) {
+				return left.equals(right);
+			}
+			if (op == BinaryExpr.Operator.notEquals) {
+				return !left.equals(right);
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings({ "PMD.CyclomaticComplexity" })
+	private Object evaluateNumber(BinaryExpr n, double left, double right) {
+		switch (n.getOperator()) {
+			case plus:
+				return checkNumber(left + right);
+			case minus:
+				return checkNumber(left - right);
+			case times:
+				return checkNumber(left * right);
+			case divide:
+				if (isIntegerType(resolvedType(n.getLeft())) && isIntegerType(resolvedType(n.getRight()))) {
+					return (double) toInt32(left / right);
+				}
+				return checkNumber(left / right);
+			case remainder:
+				return checkNumber(left % right);
+			case binAnd:
+				return (double) (toInt32(left) & toInt32(right));
+			case binOr:
+				return (double) (toInt32(left) | toInt32(right));
+			case xor:
+				return (double) (toInt32(left) ^ toInt32(right));
+			case lShift:
+				return (double) (toInt32(left) << (toInt32(right) & 0x1f));
+			case rSignedShift:
+				return (double) (toInt32(left) >> (toInt32(right) & 0x1f));
+			case rUnsignedShift:
+				return (double) ((toInt32(left) & 0xffffffffL) >>> (toInt32(right) & 0x1f));
+			case equals:
+				return left == right;
+			case notEquals:
+				return left != right;
+			case less:
+				return left < right;
+			case lessEquals:
+				return left <= right;
+			case greater:
+				return left > right;
+			case greaterEquals:
+				return left >= right;
+			default:
+				return null;
+		}
+	}
+
+	private static boolean isIntegerType(TypeWrapper type) {
+		return type != null && ClassUtils.isIntegerType(type);
+	}
+
+	/**
+	 * the ToInt32 conversion of Javascript, used by the bitwise operators and by "| 0"
+	 */
+	private static int toInt32(double d) {
+		if (Double.isNaN(d) || Double.isInfinite(d)) {
+			return 0;
+		}
+		double truncated = d < 0 ? Math.ceil(d) : Math.floor(d);
+		return (int) (long) (truncated % TWO_POW_32);
+	}
+
+	private static Double checkNumber(double d) {
+		if (Double.isNaN(d) || Double.isInfinite(d)) {
+			return null;
+		}
+		return d;
+	}
+
+	private static boolean isSafeInteger(double d) {
+		return d == Math.rint(d) && Math.abs(d) <= MAX_SAFE_INTEGER && !isNegativeZero(d);
+	}
+
+	private static boolean isNegativeZero(double d) {
+		return d == 0 && 1 / d < 0;
+	}
+
+	/**
+	 * @return the result of the Javascript conversion to string, or null if it's not sure it gives the same result
+	 */
+	private static String toJavascriptString(Object value) {
+		if (value instanceof String || value instanceof Boolean) {
+			return value.toString();
+		}
+		if (value instanceof Double && isSafeInteger((Double) value)) {
+			return Long.toString(((Double) value).longValue());
+		}
+		return null;
+	}
+
+	private static Double parseInteger(String literal) {
+		String value = literal.replace("_", "");
+		if (value.endsWith("l") || value.endsWith("L")) {
+			value = value.substring(0, value.length() - 1);
+		}
+		try {
+			if (value.startsWith("0b") || value.startsWith("0B")) {
+				return (double) Long.parseLong(value.substring(2), 2);
+			}
+			return (double) Long.decode(value);
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static Double parseDouble(String literal) {
+		try {
+			return checkNumber(Double.parseDouble(literal.replace("_", "")));
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the value of the Java string literal, or null if it contains escape sequences that are not supported
+	 */
+	@SuppressWarnings("PMD.CyclomaticComplexity")
+	private static String unescape(String literal) {
+		if (literal.indexOf('\\') < 0) {
+			return literal;
+		}
+		StringBuilder s = new StringBuilder(literal.length());
+		for (int i = 0; i < literal.length(); ++i) {
+			char c = literal.charAt(i);
+			if (c != '\\') {
+				s.append(c);
+				continue;
+			}
+			++i;
+			if (i == literal.length()) {
+				return null;
+			}
+			switch (literal.charAt(i)) {
+				case 'b':
+					s.append('\b');
+					break;
+				case 't':
+					s.append('\t');
+					break;
+				case 'n':
+					s.append('\n');
+					break;
+				case 'f':
+					s.append('\f');
+					break;
+				case 'r':
+					s.append('\r');
+					break;
+				case '"':
+				case '\'':
+				case '\\':
+					s.append(literal.charAt(i));
+					break;
+				default:
+					// octal and unicode escapes
+					return null;
+			}
+		}
+		return s.toString();
+	}
+
+	/**
+	 * @return the Javascript literal corresponding to a value returned by {@link #evaluate(Expression)}
+	 */
+	public String toLiteral(Object value) {
+		if (value instanceof Double) {
+			double d = (Double) value;
+			if (isSafeInteger(d)) {
+				return Long.toString((long) d);
+			}
+			return Double.toString(d);
+		}
+		if (value instanceof String) {
+			return "\"" + escape((String) value, '"') + "\"";
+		}
+		if (value instanceof Character) {
+			return "'" + escape(value.toString(), '\'') + "'";
+		}
+		return value.toString();
+	}
+
+	private static String escape(String value, char quote) {
+		StringBuilder s = new StringBuilder(value.length() + 2);
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c == quote || c == '\\') {
+				s.append('\\').append(c);
+			} else if (c == '\n') {
+				s.append("\\n");
+			} else if (c == '\r') {
+				s.append("\\r");
+			} else if (c == '\t') {
+				s.append("\\t");
+			} else if (c < ' ' || c > '~') {
+				s.append(String.format("\\u%04x", (int) c));
+			} else {
+				s.append(c);
+			}
+		}
+		return s.toString();
+	}
+}
@@ -119,7 +119,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.stjs.generator.GenerationContext;
 import org.stjs.generator.GeneratorConstants;
@@ -128,8 +130,11 @@ import org.stjs.generator.ast.ASTNodeData;
 import org.stjs.generator.ast.SourcePosition;
 import org.stjs.generator.name.DefaultNameProvider;
 import org.stjs.generator.name.NameProvider;
+import org.stjs.generator.name.NamespaceAliasNameProvider;
+import org.stjs.generator.name.NamespaceCollector;
 import org.stjs.generator.scope.ClassScope;
 import org.stjs.generator.scope.Scope;
+import org.stjs.generator.scope.TypeWithScope;
 import org.stjs.generator.type.ClassWrapper;
 import org.stjs.generator.type.FieldWrapper;
 import org.stjs.generator.type.MethodWrapper;
@@ -157,11 +162,20 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 
 	private static final String EQUALS = " = ";
 
+	private static final String NAMESPACE_ALIAS_PREFIX = "$ns";
+
 	private static final int INLINE_CREATION_PARENT_LEVEL = 3;
 
 	private final MethodCallTemplates specialMethodHandlers;
 
-	private final NameProvider names;
+	private NameProvider names;
+
+	/**
+	 * the names used inside strings (like the type descriptions) cannot use the namespace aliases
+	 */
+	private final NameProvider qualifiedNames;
+
+	private final ConstantFolder constants = new ConstantFolder();
 
 	private final JavascriptWriter printer;
 
@@ -172,6 +186,7 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 	public JavascriptWriterVisitor(ClassLoader builtProjectClassLoader, boolean generateSourceMap) {
 		specialMethodHandlers = new MethodCallTemplates(builtProjectClassLoader);
 		names = new DefaultNameProvider();
+		qualifiedNames = names;
 		printer = new JavascriptWriter(generateSourceMap);
 	}
 
@@ -182,6 +197,12 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 	@Override
 	public void visit(CompilationUnit n, GenerationContext context) {
 		comments = n.getComments();
+		constants.setCompilationUnit(n, context);
+		Map<String, String> namespaceAliases = getNamespaceAliases(n, context);
+		if (!namespaceAliases.isEmpty()) {
+			names = new NamespaceAliasNameProvider(namespaceAliases);
+			printer.print("(function(").printList(namespaceAliases.values()).printLn(") {");
+		}
 		if (n.getTypes() != null) {
 			for (Iterator<TypeDeclaration> i = n.getTypes().iterator(); i.hasNext();) {
 				i.next().accept(this, context);
@@ -191,9 +212,44 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 				}
 			}
 		}
+		if (!namespaceAliases.isEmpty()) {
+			List<String> namespaces = new ArrayList<String>();
+			for (String namespace : namespaceAliases.keySet()) {
+				namespaces.add("stjs.ns(\"" + namespace + "\")");
+			}
+			printer.print("})(").printList(namespaces).printLn(");");
+		}
 		printer.addSourceMapURL(context);
 	}
 
+	/**
+	 * The whole file is wrapped in a function receiving as parameters the namespaces used in the file. The namespace
+	 * objects are created by stjs.ns if needed, so they can be bound before the types they contain are loaded. This is
+	 * only possible if all the types declared in the file have a namespace (i.e. no global "var" is declared).
+	 * @return the alias of each namespace used in the given file, or an empty map if no alias should be used.
+	 */
+	private Map<String, String> getNamespaceAliases(CompilationUnit n, GenerationContext context) {
+		if (!context.getConfiguration().isAliasNamespaces() || n.getTypes() == null) {
+			return Collections.emptyMap();
+		}
+		for (TypeDeclaration typeDeclaration : n.getTypes()) {
+			if (!(typeDeclaration instanceof ClassOrInterfaceDeclaration || typeDeclaration instanceof EnumDeclaration)) {
+				continue;
+			}
+			TypeWithScope type = scope(typeDeclaration).resolveType(typeDeclaration.getName());
+			if (type == null || ClassUtils.getNamespace(type.getType()) == null || isGlobal(type.getType())) {
+				return Collections.emptyMap();
+			}
+		}
+		NamespaceCollector collector = new NamespaceCollector();
+		n.accept(collector, null);
+		Map<String, String> aliases = new LinkedHashMap<String, String>();
+		for (String namespace : collector.getNamespaces()) {
+			aliases.put(namespace, NAMESPACE_ALIAS_PREFIX + aliases.size());
+		}
+		return aliases;
+	}
+
 	@Override
 	public void visit(ClassOrInterfaceType n, GenerationContext context) {
 		printer.print(names.getTypeName(resolvedType(n)));
@@ -225,18 +281,44 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 				"synchronized blocks are not supported by Javascript");
 	}
 
+	/**
+	 * prints the value of the given expression if it's a constant expression and the inlining of constants is enabled
+	 * @return true if the expression was printed
+	 */
+	private boolean printConstantExpression(Expression n, GenerationContext context) {
+		if (!context.getConfiguration().isInlineConstants()) {
+			return false;
+		}
+		Object value = constants.evaluate(n);
+		if (value == null) {
+			return false;
+		}
+		printer.printLiteral(constants.toLiteral(value));
+		return true;
+	}
+
 	@Override
 	public void visit(CastExpr n, GenerationContext context) {
+		if (printConstantExpression(n, context)) {
+			return;
+		}
 		boolean integerType = ClassUtils.isIntegerType(n.getType());
+		// a primitive value cannot be null, so the truncation can be inlined. For wrappers the helper keeps null as is
+		boolean inlineTrunc =
+				integerType && n.getExpr() != null && ClassUtils.isPrimitiveType(resolvedType(n.getExpr()));
 
-		if (integerType) {
+		if (inlineTrunc) {
+			printer.print("(");
+		} else if (integerType) {
 			printer.print("stjs.trunc(");
 		}
 		// skip to cast type - continue with the expression
 		if (n.getExpr() != null) {
 			n.getExpr().accept(this, context);
 		}
-		if (integerType) {
+		if (inlineTrunc) {
+			printer.print(" | 0)");
+		} else if (integerType) {
 			printer.print(")");
 		}
 	}
@@ -1037,7 +1119,7 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 			StringBuilder s = new StringBuilder();
 			s.append("{name:\"Enum\"");
 			s.append(", arguments:[");
-			s.append("\"" + names.getTypeName(typeWrapper) + "\"");
+			s.append("\"" + qualifiedNames.getTypeName(typeWrapper) + "\"");
 			s.append(']');
 			s.append('}');
 			return s.toString();
@@ -1045,7 +1127,7 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 		if (ClassUtils.isBasicType(typeWrapper)) {
 			return JavascriptKeywords.NULL;
 		}
-		return "\"" + names.getTypeName(typeWrapper) + "\"";
+		return "\"" + qualifiedNames.getTypeName(typeWrapper) + "\"";
 	}
 
 	private boolean printFieldDescription(FieldDeclaration field, boolean prevFirst) {
@@ -1314,6 +1396,11 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 			return;
 		}
 
+		if (isIntegerDivisionAssign(n)) {
+			printIntegerDivisionAssign(n, context);
+			return;
+		}
+
 		n.getTarget().accept(this, context);
 		printer.print(" ");
 		printer.print(n.getOperator());
@@ -1322,15 +1409,53 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 
 	}
 
+	/**
+	 * @return true if the assignment is "x /= y" with both sides of integer type and a target that can be safely
+	 *         evaluated twice (a variable or a field of a variable)
+	 */
+	private boolean isIntegerDivisionAssign(AssignExpr n) {
+		if (n.getOperator() != AssignExpr.Operator.slash) {
+			return false;
+		}
+		Expression target = n.getTarget();
+		boolean simpleTarget = target instanceof NameExpr;
+		if (target instanceof FieldAccessExpr) {
+			Expression targetScope = ((FieldAccessExpr) target).getScope();
+			simpleTarget = targetScope instanceof ThisExpr || targetScope instanceof NameExpr;
+		}
+		return simpleTarget && isIntegerType(resolvedType(target)) && isIntegerType(resolvedType(n.getValue()));
+	}
+
+	/**
+	 * x /= y is generated as x = (x / y | 0), as the division of two primitive integers is never null.
+	 */
+	private void printIntegerDivisionAssign(AssignExpr n, GenerationContext context) {
+		n.getTarget().accept(this, context);
+		printer.print(EQUALS);
+		printer.print("(");
+		n.getTarget().accept(this, context);
+		printer.print(" / ");
+		n.getValue().accept(this, context);
+		printer.print(" | 0)");
+	}
+
+	private static boolean isIntegerType(TypeWrapper type) {
+		return type != null && ClassUtils.isIntegerType(type);
+	}
+
 	@Override
 	public void visit(BinaryExpr n, GenerationContext context) {
+		if (printConstantExpression(n, context)) {
+			return;
+		}
 		TypeWrapper leftType = ASTNodeData.resolvedType(n.getLeft());
 		TypeWrapper rightType = ASTNodeData.resolvedType(n.getRight());
+		// the result of the division of two primitive integers is never null, so stjs.trunc is not needed
 		boolean integerDivision =
 				n.getOperator() == Operator.divide && ClassUtils.isIntegerType(leftType) && ClassUtils.isIntegerType(rightType);
 
 		if (integerDivision) {
-			printer.print("stjs.trunc(");
+			printer.print("(");
 		}
 		n.getLeft().accept(this, context);
 		printer.print(" ");
@@ -1338,7 +1463,7 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 		printer.print(" ");
 		n.getRight().accept(this, context);
 		if (integerDivision) {
-			printer.print(")");
+			printer.print(" | 0)");
 		}
 	}
 
@@ -1392,6 +1517,9 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 
 	@Override
 	public void visit(FieldAccessExpr n, GenerationContext context) {
+		if (printConstantExpression(n, context)) {
+			return;
+		}
 		boolean withScopeSuper = n.getScope() != null && n.getScope().toString().equals(GeneratorConstants.SUPER);
 
 		TypeWrapper scopeType = resolvedType(n.getScope());
@@ -1499,6 +1627,9 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 			printer.print(GeneratorConstants.THIS);
 			return;
 		}
+		if (printConstantExpression(n, context)) {
+			return;
+		}
 		Variable var = resolvedVariable(n);
 		if (var == null) {
 			if (!(parent(n) instanceof SwitchEntryStmt)) {
@@ -1541,6 +1672,9 @@ public class JavascriptWriterVisitor implements VoidVisitor<GenerationContext> {
 	@Override
 	@SuppressWarnings("PMD.CyclomaticComplexity")
 	public void visit(UnaryExpr n, GenerationContext context) {
+		if (printConstantExpression(n, context)) {
+			return;
+		}
 		switch (n.getOperator()) {
 			case positive:
 				printer.print("+");
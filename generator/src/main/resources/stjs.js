@@ -239,7 +239,7 @@ Boolean.valueOf=function(value){
 var stjs={};
 
 stjs.global=this;
-stjs.skipCopy = {"prototype":true, "constructor": true, "$typeDescription":true, "$inherit" : true};
+stjs.skipCopy = {"prototype":true, "constructor": true, "$typeDescription":true, "$inherit" : true, "$jsonConverter" : true};
 
 stjs.ns=function(path){
 	var p = path.split(".");
@@ -408,15 +408,37 @@ stjs.trunc=function(n) {
 }
 
 stjs.converters = {
-	Date : function(s, type) {
-		var a = /^(\d{4})-(\d{2})-(\d{2}) (\d{2}):(\d{2}):(\d{2}(?:\.\d*)?)$/
-				.exec(s);
-		if (a) {
-			return new Date(Date.UTC(+a[1], +a[2] - 1, +a[3], +a[4], +a[5],
-					+a[6]));
-		}
-		return null;
-	},
+	/**
+	 * accepts the formats written by org.stjs.server.json.JSDateUtils: "yyyy-MM-dd HH:mm:ss", the milliseconds since
+	 * epoch or ISO-8601 (with an optional offset, the time being local without it)
+	 */
+	Date : (function() {
+		var normalized = /^(\d{4})-(\d{2})-(\d{2}) (\d{2}):(\d{2}):(\d{2}(?:\.\d*)?)$/;
+		var iso = /^(\d{4})-(\d{2})-(\d{2})T(\d{2}):(\d{2}):(\d{2})(?:\.(\d+))?(Z|([+-])(\d{2}):?(\d{2}))?$/;
+		return function(s, type) {
+			if (typeof s == "number") {
+				return new Date(s);
+			}
+			var a = normalized.exec(s);
+			if (a) {
+				return new Date(Date.UTC(+a[1], +a[2] - 1, +a[3], +a[4], +a[5],
+						+a[6]));
+			}
+			a = iso.exec(s);
+			if (a) {
+				var ms = a[7] ? +(a[7] + "00").substring(0, 3) : 0;
+				if (!a[8]) {
+					return new Date(+a[1], +a[2] - 1, +a[3], +a[4], +a[5], +a[6], ms);
+				}
+				var t = Date.UTC(+a[1], +a[2] - 1, +a[3], +a[4], +a[5], +a[6], ms);
+				if (a[9]) {
+					t -= (a[9] == "-" ? -1 : 1) * (a[10] * 60 + +a[11]) * 60000;
+				}
+				return new Date(t);
+			}
+			return null;
+		};
+	})(),
 
 	Enum : function(s, type){
 		return eval(type.arguments[0])[s];
@@ -435,9 +457,10 @@ function isEnum(obj){
 /******* parsing *************/
 
 /**
- * parse a json string using the type definition to build a typed object hierarchy
+ * parse a json string using the type definition to build a typed object hierarchy. This tokenizer is only used when the
+ * platform has no native JSON object.
  */
-stjs.parseJSON = (function () {
+stjs.parseJSONTokens = (function () {
 	  var number
 	      = '(?:-?\\b(?:0|[1-9][0-9]*)(?:\\.[0-9]+)?(?:[eE][+-]?[0-9]+)?\\b)';
 	  var oneChar = '(?:[^\\0-\\x08\\x0a-\\x1f\"\\\\]'
@@ -622,6 +645,196 @@ stjs.parseJSON = (function () {
 	  };
 })();
 
+/**
+ * returns a function converting a value built by JSON.parse to the given type. The type is a constructor, a type name
+ * or a type description like {name:"Map", arguments:[null, "Type"]}, as found in the $typeDescription of the classes.
+ * The converters of the classes are built only once and cached on the constructor, so the type description is not
+ * interpreted again for each parsed value.
+ */
+stjs.typeConverter = (function () {
+	var namedConverters = {};
+
+	var hop = Object.prototype.hasOwnProperty;
+
+	function identity(value){
+		return value;
+	}
+
+	function resolveType(typeName){
+		return eval(typeName);
+	}
+
+	function classConverter(ctor){
+		if (hop.call(ctor, "$jsonConverter"))
+			return ctor.$jsonConverter;
+		// the converters of the fields are built when the field is first met, to support recursive types
+		var fieldConverters = {};
+		var convert = function(json){
+			var obj = new ctor();
+			for(var key in json){
+				if (!hop.call(json, key))
+					continue;
+				var cv = hop.call(fieldConverters, key) ? fieldConverters[key] : null;
+				if (!cv) {
+					var desc = ctor.$typeDescription;
+					cv = fieldConverters[key] = desc && hop.call(desc, key) ? stjs.typeConverter(desc[key]) : identity;
+				}
+				obj[key] = cv(json[key]);
+			}
+			return obj;
+		};
+		ctor.$jsonConverter = convert;
+		return convert;
+	}
+
+	function build(type){
+		// the Date constructor is converted by name, so that the strings go through stjs.converters.Date too
+		var name = type === Date ? "Date" : typeof type == "function" ? null : (type.name || type);
+		var convertString, convertArray, convertObject;
+		// the dates can also be sent as the milliseconds since epoch
+		var isDate = name == "Date";
+
+		function stringConverter(){
+			if (name == null)
+				return function(s){
+					return new type(s);
+				};
+			var cv = stjs.converters[name];
+			if (cv)
+				return function(s){
+					return cv(s, type);
+				};
+			//hopefully the type has a string constructor
+			var ctor = resolveType(name);
+			return function(s){
+				return new ctor(s);
+			};
+		}
+
+		function arrayConverter(){
+			var convertElement = stjs.typeConverter(type.arguments ? type.arguments[0] : null);
+			if (convertElement === identity)
+				return identity;
+			return function(a){
+				for(var i = 0; i < a.length; ++i)
+					a[i] = convertElement(a[i]);
+				return a;
+			};
+		}
+
+		function objectConverter(){
+			if (name == "Map") {
+				var convertValue = stjs.typeConverter(type.arguments ? type.arguments[1] : null);
+				if (convertValue === identity)
+					return identity;
+				return function(m){
+					for(var key in m)
+						if (hop.call(m, key))
+							m[key] = convertValue(m[key]);
+					return m;
+				};
+			}
+			return classConverter(name == null ? type : resolveType(name));
+		}
+
+		return function(value){
+			if (value == null)
+				return value;
+			switch(typeof value){
+			case "string":
+				return (convertString || (convertString = stringConverter()))(value);
+			case "number":
+				return isDate ? stjs.converters.Date(value, type) : value;
+			case "object":
+				if (value instanceof Array)
+					return (convertArray || (convertArray = arrayConverter()))(value);
+				return (convertObject || (convertObject = objectConverter()))(value);
+			default:
+				return value;
+			}
+		};
+	}
+
+	return function(type){
+		if (!type)
+			return identity;
+		if (typeof type == "string") {
+			if (!hop.call(namedConverters, type))
+				namedConverters[type] = build(type);
+			return namedConverters[type];
+		}
+		return build(type);
+	};
+})();
+
+/**
+ * parse a json string using the type definition to build a typed object hierarchy. If the json is an array, the type is
+ * the type of its elements.
+ */
+stjs.parseJSON = function(json, type){
+	if (typeof JSON === "undefined")
+		return stjs.parseJSONTokens(json, type);
+	var value = JSON.parse(json);
+	if (value instanceof Array)
+		return stjs.typeConverter({name:"Array", arguments:[type]})(value);
+	return stjs.typeConverter(type)(value);
+};
+
+/**
+ * decodes a json string without blocking the page for large payloads. decode converts the value exactly like
+ * stjs.parseJSON, in a single slice. decodeArray expects a top-level array and converts its elements to the given type
+ * by slices of at most sliceSize elements, resuming the conversion on the next tick. The typed result is passed to the
+ * callback once the conversion is complete. When no timer is available, the whole conversion is done in a single slice.
+ */
+stjs.JSONDecoder = (function () {
+	var decoder = {
+		sliceSize : 100
+	};
+
+	function hasTimer(){
+		return typeof setTimeout !== "undefined";
+	}
+
+	function nextTick(fn){
+		if (hasTimer())
+			setTimeout(fn, 0);
+		else
+			fn();
+	}
+
+	decoder.decode = function(json, type, callback){
+		nextTick(function(){
+			callback(stjs.parseJSON(json, type));
+		});
+	};
+
+	decoder.decodeArray = function(json, elementType, callback, sliceSize){
+		if (typeof JSON === "undefined") {
+			decoder.decode(json, elementType, callback);
+			return;
+		}
+		var value = JSON.parse(json);
+		if (!(value instanceof Array))
+			throw new Error("A JSON array was expected");
+		var convert = stjs.typeConverter(elementType);
+		var length = value.length;
+		var size = hasTimer() && sliceSize !== 0 ? (sliceSize || decoder.sliceSize) : length;
+		var i = 0;
+		var slice = function(){
+			var end = Math.min(i + size, length);
+			for(; i < end; ++i)
+				value[i] = convert(value[i]);
+			if (i < length)
+				nextTick(slice);
+			else
+				callback(value);
+		};
+		nextTick(slice);
+	};
+
+	return decoder;
+})();
+
 /************* STJS asserts ***************/
 var stjsAssertHandler = function(position, code, msg) {
 	throw msg + " at " + position;
@@ -0,0 +1,11 @@
+package org.stjs.generator.exec.ints;
+
+public class Ints6 {
+	public long method(Integer a) {
+		return (long) a;
+	}
+
+	public static long main(String[] args) {
+		return new Ints6().method(2);
+	}
+}
@@ -0,0 +1,15 @@
+package org.stjs.generator.exec.ints;
+
+public class Ints7 {
+	private int field = 10;
+
+	public int method(int a) {
+		a /= 2;
+		this.field /= a;
+		return field;
+	}
+
+	public static int main(String[] args) {
+		return new Ints7().method(7);
+	}
+}
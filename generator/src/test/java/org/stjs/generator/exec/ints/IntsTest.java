@@ -1,6 +1,7 @@
 package org.stjs.generator.exec.ints;
 
 import static org.junit.Assert.assertEquals;
+import static org.stjs.generator.utils.GeneratorTestHelper.assertCodeContains;
 
 import org.junit.Test;
 import org.stjs.generator.utils.GeneratorTestHelper;
@@ -10,6 +11,7 @@ public class IntsTest {
 	@Test
 	public void testCastInt() {
 		assertEquals(2.0, GeneratorTestHelper.execute(Ints1.class));
+		assertCodeContains(Ints1.class, "method((2.3 | 0))");
 	}
 
 	@Test
@@ -20,6 +22,7 @@ public class IntsTest {
 	@Test
 	public void testIntegerDivision() {
 		assertEquals(2.0, GeneratorTestHelper.execute(Ints3.class));
+		assertCodeContains(Ints3.class, "(3 / 2 | 0) + 1");
 	}
 
 	@Test
@@ -31,4 +34,17 @@ public class IntsTest {
 	public void testDoubleDivision2() {
 		assertEquals(2.5, GeneratorTestHelper.execute(Ints5.class));
 	}
+
+	@Test
+	public void testCastWrapperKeepsTrunc() {
+		assertEquals(2.0, GeneratorTestHelper.execute(Ints6.class));
+		assertCodeContains(Ints6.class, "stjs.trunc(a)");
+	}
+
+	@Test
+	public void testIntegerDivisionAssign() {
+		assertEquals(3.0, GeneratorTestHelper.execute(Ints7.class));
+		assertCodeContains(Ints7.class, "a = (a / 2 | 0);");
+		assertCodeContains(Ints7.class, "this.field = (this.field / a | 0);");
+	}
 }
@@ -0,0 +1,20 @@
+package org.stjs.generator.exec.json;
+
+import static org.stjs.javascript.JSCollections.$map;
+
+import org.stjs.javascript.JSONDecoder;
+import org.stjs.javascript.Map;
+import org.stjs.javascript.functions.Callback1;
+
+public class Json10 {
+	public static Object main(String[] args) {
+		final Map<String, Object> holder = $map();
+		JSONDecoder.decode("{\"a\":1, \"children\":[{\"i\":2}]}", Class1.class, new Callback1<Class1>() {
+			@Override
+			public void $invoke(Class1 result) {
+				holder.$put("result", result);
+			}
+		});
+		return holder.$get("result");
+	}
+}
@@ -0,0 +1,13 @@
+package org.stjs.generator.exec.json;
+
+import static org.stjs.javascript.Global.stjs;
+
+import org.stjs.javascript.Date;
+
+public class Json11 {
+
+	public static Object main(String[] args) {
+		// a top-level date, given by its constructor
+		return stjs.parseJSON("\"2011-12-21 18:56:00\"", Date.class);
+	}
+}
@@ -0,0 +1,9 @@
+package org.stjs.generator.exec.json;
+
+import static org.stjs.javascript.Global.stjs;
+
+public class Json7 {
+	public static Object main(String[] args) {
+		return stjs.parseJSON("[{\"a\":1}, {\"a\":2, \"children\":[{\"i\":3}]}]", Class1.class);
+	}
+}
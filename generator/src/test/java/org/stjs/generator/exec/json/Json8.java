@@ -0,0 +1,22 @@
+package org.stjs.generator.exec.json;
+
+import static org.stjs.javascript.JSCollections.$map;
+
+import org.stjs.javascript.Array;
+import org.stjs.javascript.JSONDecoder;
+import org.stjs.javascript.Map;
+import org.stjs.javascript.functions.Callback1;
+
+public class Json8 {
+	public static Object main(String[] args) {
+		final Map<String, Object> holder = $map();
+		JSONDecoder.decodeArray("[{\"a\":1}, {\"a\":2, \"children\":[{\"i\":3}]}]", Class1.class,
+				new Callback1<Array<Class1>>() {
+					@Override
+					public void $invoke(Array<Class1> result) {
+						holder.$put("result", result);
+					}
+				}, 1);
+		return holder.$get("result");
+	}
+}
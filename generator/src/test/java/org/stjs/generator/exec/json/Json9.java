@@ -0,0 +1,11 @@
+package org.stjs.generator.exec.json;
+
+import static org.stjs.javascript.Global.stjs;
+
+public class Json9 {
+
+	public static Object main(String[] args) {
+		// ISO-8601 and milliseconds since epoch
+		return stjs.parseJSON("[{\"date\":\"2011-12-21T19:56:00.5+01:00\"}, {\"date\":1324493760000}]", Class4.class);
+	}
+}
@@ -4,6 +4,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
+import java.util.TimeZone;
+
 import org.junit.Test;
 import org.stjs.generator.utils.GeneratorTestHelper;
 import org.stjs.javascript.Array;
@@ -67,6 +69,32 @@ public class ParseJsonTest {
 		assertEquals(18, d.getUTCHours(), 0.1);
 	}
 
+	@Test
+	public void testDateFormats() {
+		Object result = GeneratorTestHelper.execute(Json9.class);
+		Date d = (Date) getProperty(result, "0", "date");
+		assertEquals(18, d.getUTCHours(), 0.1);
+		assertEquals(500, d.getUTCMilliseconds(), 0.1);
+		d = (Date) getProperty(result, "1", "date");
+		assertEquals(11, d.getUTCMonth(), 0.1);
+		assertEquals(18, d.getUTCHours(), 0.1);
+	}
+
+	@Test
+	public void testDateTypeOutsideUTC() {
+		// the string must be read as UTC like the fields of type Date, not as a local time
+		TimeZone defaultTimeZone = TimeZone.getDefault();
+		TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+		try {
+			Date d = (Date) GeneratorTestHelper.execute(Json11.class);
+			assertEquals(11, d.getUTCMonth(), 0.1);
+			assertEquals(18, d.getUTCHours(), 0.1);
+			assertEquals(56, d.getUTCMinutes(), 0.1);
+		} finally {
+			TimeZone.setDefault(defaultTimeZone);
+		}
+	}
+
 	@Test
 	public void testEnum() {
 		Object result = GeneratorTestHelper.execute(Json5.class);
@@ -86,4 +114,40 @@ public class ParseJsonTest {
 		assertProperty(3.0, result, "child", "i");
 		assertProperty("Inner", result, "child", "type");
 	}
+
+	@Test
+	public void testArray() {
+		Object result = GeneratorTestHelper.execute(Json7.class);
+		assertProperty(1.0, result, "0", "a");
+		assertProperty("Class1", result, "0", "type");
+		assertProperty(2.0, result, "1", "a");
+		assertProperty("Class1", result, "1", "type");
+		assertProperty(3.0, result, "1", "children", "0", "i");
+		assertProperty("Inner", result, "1", "children", "0", "type");
+	}
+
+	@Test
+	public void testDecodeArray() {
+		Object result = GeneratorTestHelper.execute(Json8.class);
+		assertProperty(1.0, result, "0", "a");
+		assertProperty("Class1", result, "0", "type");
+		assertProperty(3.0, result, "1", "children", "0", "i");
+		assertProperty("Inner", result, "1", "children", "0", "type");
+	}
+
+	@Test
+	public void testDecodeArrayBySlices() {
+		// 5 elements by slices of 2: converted in 3 ticks, the callback is called by the last one
+		assertEquals("false 3 3 3,7,11,15,19",
+				GeneratorTestHelper.execute("src/test/resources/javascript/JSONDecoder-slices.js"));
+	}
+
+	@Test
+	public void testDecode() {
+		Object result = GeneratorTestHelper.execute(Json10.class);
+		assertProperty(1.0, result, "a");
+		assertProperty("Class1", result, "type");
+		assertProperty(2.0, result, "children", "0", "i");
+		assertProperty("Inner", result, "children", "0", "type");
+	}
 }
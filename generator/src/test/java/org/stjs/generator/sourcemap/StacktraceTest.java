@@ -31,6 +31,31 @@ public class StacktraceTest {
 		assertElement(null, "/url?browserId=2430328", "onload", 17, elements[2]);
 	}
 
+	@Test
+	public void testStacktraceWithRepeatedFiles() {
+		// given
+		generateWithSourcemap(Sourcemap1.class);
+		generateWithSourcemap(Sourcemap2.class);
+
+		// when
+		String jsError =
+				"at prototype.method2 (http://localhost:8055/org/stjs/generator/sourcemap/Sourcemap2.js:4:11);" //
+						+ "at prototype.method1 (http://localhost:8055/org/stjs/generator/sourcemap/Sourcemap1.js:5:11);" //
+						+ "at prototype.method2 (http://localhost:8055/org/stjs/generator/sourcemap/Sourcemap2.js:4:11)";
+		StackTraceElement[] elements = new JavascriptToJava(buildClassLoader()).buildStacktrace(jsError, ";");
+		// the cached source maps give the same result
+		StackTraceElement[] elementsAgain = new JavascriptToJava(buildClassLoader()).buildStacktrace(jsError, ";");
+
+		// then
+		assertEquals("elements size", 3, elements.length);
+		assertElement(Sourcemap2.class, "/org/stjs/generator/sourcemap/Sourcemap2.java", "method2", 6, elements[0]);
+		assertElement(Sourcemap1.class, "/org/stjs/generator/sourcemap/Sourcemap1.java", "method1", 6, elements[1]);
+		assertElement(Sourcemap2.class, "/org/stjs/generator/sourcemap/Sourcemap2.java", "method2", 6, elements[2]);
+		for (int i = 0; i < elements.length; ++i) {
+			assertEquals(elements[i], elementsAgain[i]);
+		}
+	}
+
 	private void assertElement(Class<?> clazz, String file, String method, int line, StackTraceElement element) {
 		assertNotNull(element);
 		if (clazz != null) {
@@ -42,7 +42,16 @@ public class GeneratorTestHelper {
 	 * @return the javascript code generator from the given class
 	 */
 	public static String generate(Class<?> clazz) {
-		return (String) executeOrGenerate(clazz, false, false);
+		return (String) executeOrGenerate(clazz, false, new GeneratorConfigurationBuilder());
+	}
+
+	/**
+	 * @param clazz
+	 * @param configuration
+	 * @return the javascript code generator from the given class using the given configuration
+	 */
+	public static String generate(Class<?> clazz, GeneratorConfigurationBuilder configuration) {
+		return (String) executeOrGenerate(clazz, false, configuration);
 	}
 
 	/**
@@ -50,7 +59,7 @@ public class GeneratorTestHelper {
 	 * @return the javascript code generator from the given class
 	 */
 	public static String generateWithSourcemap(Class<?> clazz) {
-		return (String) executeOrGenerate(clazz, false, true);
+		return (String) executeOrGenerate(clazz, false, new GeneratorConfigurationBuilder().generateSourceMap(true));
 	}
 
 	/**
@@ -58,7 +67,16 @@ public class GeneratorTestHelper {
 	 * @return the javascript code generator from the given class
 	 */
 	public static Object execute(Class<?> clazz) {
-		return convert(executeOrGenerate(clazz, true, false));
+		return convert(executeOrGenerate(clazz, true, new GeneratorConfigurationBuilder()));
+	}
+
+	/**
+	 * @param clazz
+	 * @param configuration
+	 * @return the result of the execution of the javascript code generated using the given configuration
+	 */
+	public static Object execute(Class<?> clazz, GeneratorConfigurationBuilder configuration) {
+		return convert(executeOrGenerate(clazz, true, configuration));
 	}
 
 	public static Object execute(String preGeneratedJs) {
@@ -131,7 +149,7 @@ public class GeneratorTestHelper {
 	 * @param clazz
 	 * @return the javascript code generator from the given class
 	 */
-	private static Object executeOrGenerate(Class<?> clazz, boolean execute, boolean withSourceMap) {
+	private static Object executeOrGenerate(Class<?> clazz, boolean execute, GeneratorConfigurationBuilder configuration) {
 		Generator gen = new Generator();
 
 		File generationPath = new File("target", TEMP_GENERATION_PATH);
@@ -145,8 +163,7 @@ public class GeneratorTestHelper {
 						new File(sourcePath),
 						generationFolder,
 						new File("target", "test-classes"),
-						new GeneratorConfigurationBuilder().allowedPackage("org.stjs.javascript")
-								.allowedPackage("org.stjs.generator").generateSourceMap(withSourceMap).build());
+						configuration.allowedPackage("org.stjs.javascript").allowedPackage("org.stjs.generator").build());
 
 		File jsFile = new File(generationPath, stjsClass.getJavascriptFiles().get(0).getPath());
 		try {
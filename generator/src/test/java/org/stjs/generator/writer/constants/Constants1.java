@@ -0,0 +1,9 @@
+package org.stjs.generator.writer.constants;
+
+public class Constants1 {
+	public static final int MAX = 10;
+
+	public static int main(String[] args) {
+		return MAX * 2 + 1;
+	}
+}
@@ -0,0 +1,7 @@
+package org.stjs.generator.writer.constants;
+
+public class Constants2 {
+	public static String main(String[] args) {
+		return ConstantsHolder.PREFIX + ConstantsHolder.COUNT;
+	}
+}
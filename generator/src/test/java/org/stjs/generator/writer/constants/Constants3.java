@@ -0,0 +1,7 @@
+package org.stjs.generator.writer.constants;
+
+public class Constants3 {
+	public static int main(String[] args) {
+		return ConstantsHolder.BOXED + ConstantsHolder.notFinal;
+	}
+}
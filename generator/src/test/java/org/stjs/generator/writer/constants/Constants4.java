@@ -0,0 +1,8 @@
+package org.stjs.generator.writer.constants;
+
+public class Constants4 {
+	public static int main(String[] args) {
+		int a = ConstantsHolder.COUNT / 2 + (int) 2.7;
+		return ConstantsHolder.ENABLED && !false ? a : -a;
+	}
+}
@@ -0,0 +1,9 @@
+package org.stjs.generator.writer.constants;
+
+public class Constants5 {
+	public static final int LIMIT = 3;
+
+	public static int main(String[] args) {
+		return new Constants5().LIMIT + Constants5.LIMIT;
+	}
+}
@@ -0,0 +1,9 @@
+package org.stjs.generator.writer.constants;
+
+public class Constants6 {
+	public static final int OWN_OVERFLOW = 2147483647 + 1;
+
+	public static long main(String[] args) {
+		return OWN_OVERFLOW + ConstantsHolder.OVERFLOW + ConstantsHolder.MASK + ConstantsHolder.BIG + ConstantsHolder.COUNT;
+	}
+}
@@ -0,0 +1,67 @@
+package org.stjs.generator.writer.constants;
+
+import static org.junit.Assert.assertEquals;
+import static org.stjs.generator.utils.GeneratorTestHelper.assertCodeContains;
+import static org.stjs.generator.utils.GeneratorTestHelper.assertCodeDoesNotContain;
+import static org.stjs.generator.utils.GeneratorTestHelper.execute;
+import static org.stjs.generator.utils.GeneratorTestHelper.generate;
+
+import org.junit.Test;
+import org.stjs.generator.GeneratorConfigurationBuilder;
+
+public class ConstantsGeneratorTest {
+	private static GeneratorConfigurationBuilder inlineConstants() {
+		return new GeneratorConfigurationBuilder().inlineConstants(true);
+	}
+
+	@Test
+	public void testConstantsNotInlinedByDefault() {
+		assertCodeContains(generate(Constants1.class), "return Constants1.MAX * 2 + 1;");
+	}
+
+	@Test
+	public void testFoldOwnConstant() {
+		String code = generate(Constants1.class, inlineConstants());
+		assertCodeContains(code, "return 21;");
+		// the field itself is still generated
+		assertCodeContains(code, "constructor.MAX = 10;");
+		assertEquals(21.0, execute(Constants1.class, inlineConstants()));
+	}
+
+	@Test
+	public void testFoldOtherClassConstants() {
+		assertCodeContains(generate(Constants2.class, inlineConstants()), "return \"id-\\\"7\";");
+		assertEquals("id-\"7", execute(Constants2.class, inlineConstants()));
+	}
+
+	@Test
+	public void testNonConstantFieldsNotInlined() {
+		String code = generate(Constants3.class, inlineConstants());
+		assertCodeContains(code, "ConstantsHolder.BOXED + ConstantsHolder.notFinal");
+		assertEquals(7.0, execute(Constants3.class, inlineConstants()));
+	}
+
+	@Test
+	public void testFoldIntegerDivisionCastAndBooleans() {
+		String code = generate(Constants4.class, inlineConstants());
+		assertCodeContains(code, "var a = 5;");
+		assertCodeContains(code, "return true ? a : -a;");
+		assertCodeDoesNotContain(code, "ConstantsHolder.ENABLED");
+		assertEquals(5.0, execute(Constants4.class, inlineConstants()));
+	}
+
+	@Test
+	public void testConstantsThroughInstanceNotInlined() {
+		// the instance expression must be kept, as it may have side effects
+		assertCodeContains(generate(Constants5.class, inlineConstants()), "return new Constants5().LIMIT + 3;");
+	}
+
+	@Test
+	public void testConstantsWithDifferentJavascriptValueNotInlined() {
+		// the Java values of the overflowing initializers are not the ones computed by the generated code
+		String code = generate(Constants6.class, inlineConstants());
+		assertCodeContains(code, "return Constants6.OWN_OVERFLOW + ConstantsHolder.OVERFLOW + ConstantsHolder.MASK"
+				+ " + ConstantsHolder.BIG + 7;");
+		assertEquals(8589934854.0, execute(Constants6.class, inlineConstants()));
+	}
+}
@@ -0,0 +1,12 @@
+package org.stjs.generator.writer.constants;
+
+public class ConstantsHolder {
+	public static final String PREFIX = "id-\"";
+	public static final int COUNT = 7;
+	public static final boolean ENABLED = true;
+	public static final Integer BOXED = 3;
+	public static int notFinal = 4;
+	public static final int OVERFLOW = 2147483647 + 1;
+	public static final int MASK = 0xFFFFFFFF;
+	public static final long BIG = 1L << 40;
+}
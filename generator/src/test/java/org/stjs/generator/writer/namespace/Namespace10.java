@@ -0,0 +1,16 @@
+package org.stjs.generator.writer.namespace;
+
+import org.stjs.javascript.annotation.Namespace;
+
+@Namespace("a.b")
+public class Namespace10 extends Namespace1 {
+	public Namespace7 field;
+
+	public int method() {
+		return Namespace11.twice(Namespace11.value);
+	}
+
+	public static int main(String[] args) {
+		return new Namespace10().method();
+	}
+}
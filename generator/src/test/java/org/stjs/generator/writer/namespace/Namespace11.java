@@ -0,0 +1,12 @@
+package org.stjs.generator.writer.namespace;
+
+import org.stjs.javascript.annotation.Namespace;
+
+@Namespace("c.d")
+public class Namespace11 {
+	public static int value = 2;
+
+	public static int twice(int x) {
+		return x * 2;
+	}
+}
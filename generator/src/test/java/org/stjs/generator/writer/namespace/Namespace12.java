@@ -0,0 +1,7 @@
+package org.stjs.generator.writer.namespace;
+
+public class Namespace12 {
+	public void method() {
+		Namespace5.staticMethod();
+	}
+}
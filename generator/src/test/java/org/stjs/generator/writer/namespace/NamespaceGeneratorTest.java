@@ -1,10 +1,13 @@
 package org.stjs.generator.writer.namespace;
 
+import static org.junit.Assert.assertEquals;
 import static org.stjs.generator.utils.GeneratorTestHelper.assertCodeContains;
 import static org.stjs.generator.utils.GeneratorTestHelper.assertCodeDoesNotContain;
+import static org.stjs.generator.utils.GeneratorTestHelper.execute;
 import static org.stjs.generator.utils.GeneratorTestHelper.generate;
 
 import org.junit.Test;
+import org.stjs.generator.GeneratorConfigurationBuilder;
 import org.stjs.generator.JavascriptFileGenerationException;
 
 public class NamespaceGeneratorTest {
@@ -67,4 +70,23 @@ public class NamespaceGeneratorTest {
 	public void testReservedWordsInNamespace() {
 		generate(Namespace9.class);
 	}
+
+	@Test
+	public void testNamespaceAliases() {
+		String code = generate(Namespace10.class, new GeneratorConfigurationBuilder().aliasNamespaces(true));
+		assertCodeContains(code, "(function($ns0, $ns1) {");
+		assertCodeContains(code, "stjs.extend($ns0.Namespace10, $ns0.Namespace1, [],");
+		assertCodeContains(code, "return $ns1.Namespace11.twice($ns1.Namespace11.value);");
+		// the type description keeps the full name
+		assertCodeContains(code, "\"field\":\"a.b.Namespace7\"");
+		assertCodeContains(code, "})(stjs.ns(\"a.b\"), stjs.ns(\"c.d\"));");
+		assertEquals(4.0, execute(Namespace10.class, new GeneratorConfigurationBuilder().aliasNamespaces(true)));
+	}
+
+	@Test
+	public void testNoNamespaceAliasesForGlobalTypes() {
+		String code = generate(Namespace12.class, new GeneratorConfigurationBuilder().aliasNamespaces(true));
+		assertCodeDoesNotContain(code, "(function(");
+		assertCodeContains(code, "a.b.Namespace5.staticMethod()");
+	}
 }
@@ -0,0 +1,15 @@
+package org.stjs.generator.writer.specialMethods;
+
+import static org.stjs.javascript.JSCollections.$doubleArray;
+import static org.stjs.javascript.JSCollections.$intArray;
+
+import org.stjs.javascript.Array;
+
+public class SpecialMethod24 {
+
+	@SuppressWarnings("unused")
+	public void method() {
+		Array<Double> d = $doubleArray(1.5, 2);
+		Array<Integer> i = $intArray(3, 4);
+	}
+}
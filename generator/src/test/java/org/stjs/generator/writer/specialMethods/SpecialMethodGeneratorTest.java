@@ -171,4 +171,11 @@ public class SpecialMethodGeneratorTest {
 	public void testTypeOf() {
 		assertCodeContains(SpecialMethod23.class, "n = (typeof \"abc\")");
 	}
+
+	@Test
+	public void testPrimitiveArrays() {
+		// the primitive arrays are plain arrays on the client side
+		assertCodeContains(SpecialMethod24.class, "d = [1.5, 2]");
+		assertCodeContains(SpecialMethod24.class, "i = [3, 4]");
+	}
 }
@@ -0,0 +1,35 @@
+// a timer shim, so that the slices of JSONDecoder are really scheduled and resumed
+var timers = [];
+var setTimeout = function(fn, delay) {
+	timers.push(fn);
+};
+
+var result = {
+	ticks : 0,
+	slicesBeforeCallback : 0,
+	value : null
+};
+var Point = function() {};
+Point.prototype.sum = function() {
+	return this.x + this.y;
+};
+Point.$typeDescription = {};
+
+stjs.JSONDecoder.decodeArray("[{\"x\":1,\"y\":2},{\"x\":3,\"y\":4},{\"x\":5,\"y\":6},{\"x\":7,\"y\":8},{\"x\":9,\"y\":10}]",
+		Point, function(array) {
+			result.slicesBeforeCallback = result.ticks;
+			result.value = array;
+		}, 2);
+// nothing is converted before the first tick
+result.convertedSynchronously = result.value != null;
+while (timers.length) {
+	result.ticks++;
+	timers.shift()();
+}
+
+var sums = [];
+for ( var i = 0; i < result.value.length; ++i) {
+	sums.push(result.value[i].sum());
+}
+// synchronous conversion, number of ticks, ticks before the callback, converted values
+result.convertedSynchronously + " " + result.ticks + " " + result.slicesBeforeCallback + " " + sums.join(",");
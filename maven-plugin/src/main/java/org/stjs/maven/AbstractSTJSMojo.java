@@ -126,6 +126,22 @@ abstract public class AbstractSTJSMojo extends AbstractMojo {
 	 */
 	protected boolean generateSourceMap;
 
+	/**
+	 * If true, the references to the compile-time constants (static final fields of a primitive or String type) are
+	 * replaced by their value and the constant expressions are evaluated during the generation.
+	 * 
+	 * @parameter expression="${inlineConstants}" default-value="false"
+	 */
+	protected boolean inlineConstants;
+
+	/**
+	 * If true, each generated file whose types all have a namespace is wrapped in a function that receives the used
+	 * namespaces as parameters, so the namespaces are resolved only once per file instead of at each access.
+	 * 
+	 * @parameter expression="${aliasNamespaces}" default-value="false"
+	 */
+	protected boolean aliasNamespaces;
+
 	/**
 	 * If true, it packs all the generated Javascript file (using the correct dependency order) into a single file named
 	 * ${project.artifactName}.js
@@ -178,6 +194,8 @@ abstract public class AbstractSTJSMojo extends AbstractMojo {
 		GeneratorConfigurationBuilder configBuilder = new GeneratorConfigurationBuilder();
 		configBuilder.generateArrayHasOwnProperty(generateArrayHasOwnProperty);
 		configBuilder.generateSourceMap(generateSourceMap);
+		configBuilder.inlineConstants(inlineConstants);
+		configBuilder.aliasNamespaces(aliasNamespaces);
 		if (sourceEncoding != null) {
 			configBuilder.sourceEncoding(sourceEncoding);
 		}
@@ -15,26 +15,197 @@
  */
 package org.stjs.server;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 import org.stjs.javascript.Array;
 import org.stjs.javascript.SortFunction;
 import org.stjs.javascript.functions.Callback1;
 
 /**
- * This class implements the {@link Array} interface to be used on the server side.
+ * This class implements the {@link Array} interface to be used on the server side. As it implements
+ * {@link RandomAccess}, the elements can be visited with {@link #$get(int)} from 0 to {@link #$length()}, without
+ * going through the String keys of the {@link #iterator()}.
+ * <p>
+ * The elements are stored in a growing ring buffer, so {@link #push(Object...)}, {@link #pop()}, {@link #shift()} and
+ * {@link #unshift(Object...)} run in amortized constant time (relative to the number of added elements), while
+ * {@link #slice(int, int)} and {@link #splice(int, int, Object...)} move the elements with {@link System#arraycopy}.
+ * <p>
+ * When the length of the array grows far beyond the number of its elements (like when the array is used as a lookup
+ * table indexed by ids), the elements are moved to a sparse storage, an int-keyed hash table. The array comes back to
+ * the dense storage when it fills up again, or before any operation moving the elements (shift, unshift, splice,
+ * reverse, sort). The length and the iteration order are the same in both modes.
  * 
  * @author acraciun
  * @param <V>
  */
-public class ArrayImpl<V> implements Array<V> {
-	private final List<V> array = new ArrayList<V>();
+public class ArrayImpl<V> implements Array<V>, RandomAccess {
+	private static final int MIN_CAPACITY = 8;
+
+	/**
+	 * the sparse storage is only used for arrays longer than this
+	 */
+	private static final int SPARSE_MIN_LENGTH = 1024;
+
+	/**
+	 * the storage becomes sparse when the length exceeds this factor times the number of elements
+	 */
+	private static final int SPARSE_FACTOR = 4;
+
+	/**
+	 * the storage becomes dense again when the number of elements times this factor reaches the length
+	 */
+	private static final int DENSE_FACTOR = 2;
+
+	private static final Object[] EMPTY_VALUES = new Object[0];
+
+	/**
+	 * the capacity is always a power of 2. The slots that are not used are always null.
+	 */
+	private Object[] elements;
+
+	/**
+	 * the position in elements of the element at index 0
+	 */
+	private int head;
+
+	private int size;
+
+	/**
+	 * the elements, when the array is in the sparse mode. elements is not used in this case.
+	 */
+	private SparseElements sparse;
+
+	public ArrayImpl() {
+		this(MIN_CAPACITY);
+	}
+
+	public ArrayImpl(int initialCapacity) {
+		elements = new Object[capacityFor(initialCapacity)];
+	}
+
+	private static int capacityFor(int minCapacity) {
+		if (minCapacity <= MIN_CAPACITY) {
+			return MIN_CAPACITY;
+		}
+		int capacity = Integer.highestOneBit(minCapacity - 1) << 1;
+		if (capacity < 0) {
+			throw new OutOfMemoryError("Array too large");
+		}
+		return capacity;
+	}
+
+	private int physical(int index) {
+		return (head + index) & (elements.length - 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private V element(int index) {
+		if (sparse != null) {
+			return (V) sparse.get(index);
+		}
+		return (V) elements[physical(index)];
+	}
+
+	private boolean shouldBeSparse(int newLength) {
+		return newLength > SPARSE_MIN_LENGTH && newLength > SPARSE_FACTOR * size;
+	}
+
+	private void toSparse() {
+		SparseElements s = new SparseElements(size);
+		for (int i = 0; i < size; ++i) {
+			s.put(i, elements[physical(i)]);
+		}
+		sparse = s;
+		elements = new Object[MIN_CAPACITY];
+		head = 0;
+	}
+
+	private void toDense() {
+		if (sparse == null) {
+			return;
+		}
+		elements = new Object[capacityFor(size)];
+		head = 0;
+		sparse.copyTo(elements);
+		sparse = null;
+	}
+
+	private void toDenseIfFull() {
+		if (sparse != null && sparse.count() * DENSE_FACTOR >= size) {
+			toDense();
+		}
+	}
+
+	/**
+	 * copies count elements starting at the given index to the destination array
+	 */
+	private void copyOut(int from, int count, Object[] dest, int destPos) {
+		if (count <= 0) {
+			return;
+		}
+		int p = physical(from);
+		int first = java.lang.Math.min(count, elements.length - p);
+		System.arraycopy(elements, p, dest, destPos, first);
+		if (first < count) {
+			System.arraycopy(elements, 0, dest, destPos + first, count - first);
+		}
+	}
+
+	/**
+	 * copies count elements from the source array to the given index. The capacity must be large enough.
+	 */
+	private void copyIn(Object[] src, int srcPos, int to, int count) {
+		if (count <= 0) {
+			return;
+		}
+		int p = physical(to);
+		int first = java.lang.Math.min(count, elements.length - p);
+		System.arraycopy(src, srcPos, elements, p, first);
+		if (first < count) {
+			System.arraycopy(src, srcPos + first, elements, 0, count - first);
+		}
+	}
+
+	/**
+	 * moves the elements at the beginning of a buffer that can hold at least the given number of elements without
+	 * wrapping
+	 */
+	private void linearize(int minCapacity) {
+		Object[] newElements = new Object[java.lang.Math.max(capacityFor(minCapacity), elements.length)];
+		copyOut(0, size, newElements, 0);
+		elements = newElements;
+		head = 0;
+	}
+
+	/**
+	 * makes sure the array can hold the given number of elements without growing again. It has no effect on a sparse
+	 * array.
+	 */
+	public void ensureCapacity(int minCapacity) {
+		if ((sparse == null) && (minCapacity > elements.length)) {
+			linearize(java.lang.Math.max(minCapacity, elements.length << 1));
+		}
+	}
+
+	/**
+	 * clears the slots used by count elements starting at the given index
+	 */
+	private void clear(int from, int count) {
+		for (int i = 0; i < count; ++i) {
+			elements[physical(from + i)] = null;
+		}
+	}
+
+	private int startIndex(int start) {
+		if (start < 0) {
+			return java.lang.Math.max(size + start, 0);
+		}
+		return java.lang.Math.min(start, size);
+	}
 
 	@Override
 	public Iterator<String> iterator() {
@@ -43,7 +214,7 @@ public class ArrayImpl<V> implements Array<V> {
 
 			@Override
 			public boolean hasNext() {
-				return current < array.size();
+				return current < size;
 			}
 
 			@Override
@@ -63,15 +234,15 @@ public class ArrayImpl<V> implements Array<V> {
 
 	@Override
 	public V $get(int index) {
-		if ((index < 0) || (index >= array.size())) {
+		if ((index < 0) || (index >= size)) {
 			return null;
 		}
-		return array.get(index);
+		return element(index);
 	}
 
 	@Override
 	public V $get(String index) {
-		return $get(Integer.valueOf(index));
+		return $get(Integer.parseInt(index));
 	}
 
 	@Override
@@ -79,58 +250,93 @@ public class ArrayImpl<V> implements Array<V> {
 		if (index < 0) {
 			return;
 		}
-		if (index >= array.size()) {
+		if (index >= size) {
 			$length(index + 1);
 		}
-		array.set(index, value);
+		if (sparse != null) {
+			sparse.put(index, value);
+			toDenseIfFull();
+		} else {
+			elements[physical(index)] = value;
+		}
 	}
 
 	@Override
 	public void $set(String index, V value) {
-		$set(Integer.valueOf(index), value);
+		$set(Integer.parseInt(index), value);
 	}
 
 	@Override
 	public int $length() {
-		return array.size();
+		return size;
 	}
 
 	@Override
 	public void $length(int newLength) {
-		if (newLength < array.size()) {
-			splice(newLength, array.size() - newLength);
-		} else {
-			while (array.size() < newLength) {
-				array.add(null);
+		if (newLength < 0) {
+			return;
+		}
+		if (sparse != null) {
+			if (newLength < size) {
+				sparse.removeFrom(newLength);
 			}
+			size = newLength;
+			toDenseIfFull();
+			return;
 		}
-
+		if (newLength < size) {
+			clear(newLength, size - newLength);
+		} else if (shouldBeSparse(newLength)) {
+			toSparse();
+		} else {
+			ensureCapacity(newLength);
+		}
+		size = newLength;
 	}
 
 	@Override
 	public Array<V> concat(Array<V>... arrays) {
-		ArrayImpl<V> ret = new ArrayImpl<V>();
-		ret.array.addAll(this.array);
+		int length = size;
+		for (Array<V> a : arrays) {
+			length += a.$length();
+		}
+		ArrayImpl<V> ret = new ArrayImpl<V>(length);
+		ret.append(this);
 		for (Array<V> a : arrays) {
+			ret.append(a);
+		}
+		return ret;
+	}
+
+	/**
+	 * appends the elements of the given array. This array must be dense and have enough capacity.
+	 */
+	private void append(Array<V> a) {
+		if (a instanceof ArrayImpl && ((ArrayImpl<V>) a).sparse == null) {
+			ArrayImpl<V> other = (ArrayImpl<V>) a;
+			other.copyOut(0, other.size, elements, size);
+			size += other.size;
+		} else {
 			for (int i = 0; i < a.$length(); ++i) {
-				ret.array.add(a.$get(i));
+				elements[size++] = a.$get(i);
 			}
 		}
-		return ret;
 	}
 
 	@Override
 	public int indexOf(V element) {
-		return array.indexOf(element);
+		return indexOf(element, 0);
 	}
 
 	@Override
 	public int indexOf(V element, int start) {
-		int pos = array.subList(start, array.size()).indexOf(element);
-		if (pos < 0) {
-			return pos;
+		for (int i = startIndex(start); i < size; ++i) {
+			V value = element(i);
+			if (element == null ? value == null : element.equals(value)) {
+				return i;
+			}
 		}
-		return pos + start;
+		return -1;
 	}
 
 	@Override
@@ -141,10 +347,11 @@ public class ArrayImpl<V> implements Array<V> {
 	@Override
 	public String join(String separator) {
 		StringBuilder sb = new StringBuilder();
-		for (V value : array) {
-			if (sb.length() != 0) {
+		for (int i = 0; i < size; ++i) {
+			if (i != 0) {
 				sb.append(separator);
 			}
+			V value = element(i);
 			sb.append(value != null ? value.toString() : "");
 		}
 		return sb.toString();
@@ -152,103 +359,329 @@ public class ArrayImpl<V> implements Array<V> {
 
 	@Override
 	public V pop() {
-		if (array.size() == 0) {
+		if (size == 0) {
 			return null;
 		}
-		return array.remove(array.size() - 1);
+		if (sparse != null) {
+			@SuppressWarnings("unchecked")
+			V value = (V) sparse.remove(size - 1);
+			--size;
+			toDenseIfFull();
+			return value;
+		}
+		int p = physical(size - 1);
+		@SuppressWarnings("unchecked")
+		V value = (V) elements[p];
+		elements[p] = null;
+		--size;
+		return value;
 	}
 
 	@Override
 	public int push(V... values) {
-		for (V value : values) {
-			array.add(value);
+		if (sparse != null) {
+			for (V value : values) {
+				sparse.put(size++, value);
+			}
+			toDenseIfFull();
+			return size;
+		}
+		ensureCapacity(size + values.length);
+		copyIn(values, 0, size, values.length);
+		size += values.length;
+		return size;
+	}
+
+	/**
+	 * adds the value at the end of the array, like {@link #push(Object...)} but without the varargs array
+	 */
+	public void add(V value) {
+		if (sparse != null) {
+			sparse.put(size++, value);
+			toDenseIfFull();
+			return;
 		}
-		return array.size();
+		ensureCapacity(size + 1);
+		elements[physical(size)] = value;
+		++size;
 	}
 
 	@Override
 	public void reverse() {
-		Collections.reverse(array);
+		toDense();
+		for (int i = 0, j = size - 1; i < j; ++i, --j) {
+			int pi = physical(i);
+			int pj = physical(j);
+			Object tmp = elements[pi];
+			elements[pi] = elements[pj];
+			elements[pj] = tmp;
+		}
 	}
 
 	@Override
 	public V shift() {
-		if (array.size() == 0) {
+		if (size == 0) {
 			return null;
 		}
-		return array.remove(0);
+		toDense();
+		@SuppressWarnings("unchecked")
+		V value = (V) elements[head];
+		elements[head] = null;
+		head = (head + 1) & (elements.length - 1);
+		--size;
+		return value;
 	}
 
 	@Override
 	public Array<V> slice(int start) {
-		if (start < 0) {
-			return slice(java.lang.Math.max(0, array.size() - start), array.size());
-		}
-		return slice(start, array.size());
+		return slice(start, size);
 	}
 
 	@Override
 	public Array<V> slice(int start, int end) {
-		int s = start < 0 ? java.lang.Math.max(0, array.size() - start) : start;
-		s = java.lang.Math.min(s, array.size());
-		int e = java.lang.Math.min(end, array.size());
-		if (s <= e) {
+		int s = startIndex(start);
+		int e = startIndex(end);
+		if (e <= s) {
 			return new ArrayImpl<V>();
 		}
-		ArrayImpl<V> ret = new ArrayImpl<V>();
-		ret.array.addAll(array.subList(s, e));
+		ArrayImpl<V> ret = new ArrayImpl<V>(e - s);
+		if (sparse != null) {
+			for (int i = s; i < e; ++i) {
+				ret.elements[i - s] = sparse.get(i);
+			}
+		} else {
+			copyOut(s, e - s, ret.elements, 0);
+		}
+		ret.size = e - s;
+		return ret;
+	}
+
+	/**
+	 * @return a copy of this array, in the same storage mode. This array is not modified.
+	 */
+	ArrayImpl<V> copy() {
+		ArrayImpl<V> ret = new ArrayImpl<V>(0);
+		ret.size = size;
+		if (sparse != null) {
+			ret.sparse = sparse.copy();
+		} else {
+			ret.elements = new Object[elements.length];
+			copyOut(0, size, ret.elements, 0);
+		}
 		return ret;
 	}
 
 	@Override
 	public Array<V> splice(int start) {
-		return splice(start, array.size() - start);
+		return splice(start, size);
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public Array<V> splice(int start, int howMany) {
-		ArrayImpl<V> ret = new ArrayImpl<V>();
-		for (int i = 0; i < howMany; ++i) {
-			if (start >= array.size()) {
-				break;
-			}
-			ret.array.add(array.remove(start));
-		}
-		return ret;
+		return splice(start, howMany, (V[]) EMPTY_VALUES);
 	}
 
 	@Override
 	public Array<V> splice(int start, int howMany, V... values) {
-		Array<V> removed = splice(start, howMany);
-		array.addAll(start, Arrays.asList(values));
-		return removed;
+		int s = startIndex(start);
+		int removed = java.lang.Math.min(java.lang.Math.max(howMany, 0), size - s);
+		int added = values.length;
+		toDense();
+
+		ArrayImpl<V> ret = new ArrayImpl<V>(removed);
+		copyOut(s, removed, ret.elements, 0);
+		ret.size = removed;
+
+		int newSize = size - removed + added;
+		if (s == 0) {
+			// change at the beginning: only the head moves
+			ensureCapacity(newSize);
+			if (removed > added) {
+				clear(0, removed - added);
+			}
+			head = (head + removed - added) & (elements.length - 1);
+		} else if (removed != added) {
+			if (head + java.lang.Math.max(size, newSize) > elements.length) {
+				linearize(java.lang.Math.max(newSize, elements.length));
+			}
+			System.arraycopy(elements, head + s + removed, elements, head + s + added, size - s - removed);
+			if (newSize < size) {
+				Arrays.fill(elements, head + newSize, head + size, null);
+			}
+		}
+		copyIn(values, 0, s, added);
+		size = newSize;
+		return ret;
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public void sort(final SortFunction<V> function) {
-		Collections.sort(array, new Comparator<V>() {
+		toDense();
+		Object[] sorted = new Object[elements.length];
+		copyOut(0, size, sorted, 0);
+		Arrays.sort(sorted, 0, size, new Comparator<Object>() {
 			@Override
-			public int compare(V a, V b) {
-				return function.$invoke(a, b);
+			public int compare(Object a, Object b) {
+				return function.$invoke((V) a, (V) b);
 			}
 		});
+		elements = sorted;
+		head = 0;
 	}
 
 	@Override
 	public int unshift(V... values) {
-		array.addAll(0, Arrays.asList(values));
-		return array.size();
+		splice(0, 0, values);
+		return size;
 	}
 
 	@Override
 	public void forEach(Callback1<V> callback) {
-		for (V value : array) {
-			callback.$invoke(value);
+		for (int i = 0; i < size; ++i) {
+			callback.$invoke(element(i));
 		}
 	}
 
 	@Override
 	public String toString() {
-		return array.toString();
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; ++i) {
+			if (i != 0) {
+				sb.append(", ");
+			}
+			sb.append(element(i));
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * the storage of a sparse array: an open addressing hash table from the index to the element, with linear probing.
+	 * The null elements are not stored.
+	 */
+	private static final class SparseElements {
+		private static final int FREE = -1;
+
+		private int[] keys;
+		private Object[] values;
+		private int count;
+
+		public SparseElements(int expectedCount) {
+			allocate(capacityFor(expectedCount * 2));
+		}
+
+		private void allocate(int capacity) {
+			keys = new int[capacity];
+			Arrays.fill(keys, FREE);
+			values = new Object[capacity];
+			count = 0;
+		}
+
+		private static int hash(int key) {
+			int h = key * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+
+		private int slot(int key) {
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (keys[i] != FREE && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		public int count() {
+			return count;
+		}
+
+		public Object get(int key) {
+			int i = slot(key);
+			return keys[i] == key ? values[i] : null;
+		}
+
+		public void put(int key, Object value) {
+			if (value == null) {
+				remove(key);
+				return;
+			}
+			int i = slot(key);
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			keys[i] = key;
+			values[i] = value;
+			if (++count * 2 > keys.length) {
+				rehash(keys.length << 1);
+			}
+		}
+
+		public Object remove(int key) {
+			int mask = keys.length - 1;
+			int hole = slot(key);
+			if (keys[hole] != key) {
+				return null;
+			}
+			Object value = values[hole];
+			keys[hole] = FREE;
+			values[hole] = null;
+			--count;
+			// move back the following entries of the cluster that can fill the hole
+			for (int j = (hole + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+				int home = hash(keys[j]) & mask;
+				boolean stays = hole < j ? (home > hole && home <= j) : (home > hole || home <= j);
+				if (!stays) {
+					keys[hole] = keys[j];
+					values[hole] = values[j];
+					keys[j] = FREE;
+					values[j] = null;
+					hole = j;
+				}
+			}
+			return value;
+		}
+
+		/**
+		 * removes the elements with an index greater or equal than the given length
+		 */
+		public void removeFrom(int length) {
+			int[] oldKeys = keys;
+			Object[] oldValues = values;
+			allocate(keys.length);
+			for (int i = 0; i < oldKeys.length; ++i) {
+				if (oldKeys[i] != FREE && oldKeys[i] < length) {
+					put(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+
+		private void rehash(int capacity) {
+			int[] oldKeys = keys;
+			Object[] oldValues = values;
+			allocate(capacity);
+			for (int i = 0; i < oldKeys.length; ++i) {
+				if (oldKeys[i] != FREE) {
+					put(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+
+		public SparseElements copy() {
+			SparseElements ret = new SparseElements(0);
+			ret.keys = keys.clone();
+			ret.values = values.clone();
+			ret.count = count;
+			return ret;
+		}
+
+		public void copyTo(Object[] dest) {
+			for (int i = 0; i < keys.length; ++i) {
+				if (keys[i] != FREE) {
+					dest[keys[i]] = values[i];
+				}
+			}
+		}
 	}
 }
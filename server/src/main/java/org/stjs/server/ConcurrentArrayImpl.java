@@ -0,0 +1,200 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.server;
+
+import java.util.Iterator;
+
+import org.stjs.javascript.Array;
+import org.stjs.javascript.SortFunction;
+import org.stjs.javascript.functions.Callback1;
+
+/**
+ * This class implements a thread-safe {@link Array} for the server side, meant for data that is read far more often
+ * than it's modified, like shared caches. The elements are kept in an {@link ArrayImpl} that is never modified once
+ * published: the reads use the current instance without any lock, while each modification works on a copy that
+ * replaces the current instance (copy-on-write). The iterations see the elements as they were when they started.
+ * 
+ * @param <V>
+ */
+public class ConcurrentArrayImpl<V> implements Array<V> {
+	private volatile ArrayImpl<V> current;
+
+	public ConcurrentArrayImpl() {
+		this(new ArrayImpl<V>());
+	}
+
+	private ConcurrentArrayImpl(ArrayImpl<V> initial) {
+		current = initial;
+	}
+
+	private static <V> ConcurrentArrayImpl<V> wrap(Array<V> array) {
+		return new ConcurrentArrayImpl<V>((ArrayImpl<V>) array);
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return current.iterator();
+	}
+
+	@Override
+	public V $get(int index) {
+		return current.$get(index);
+	}
+
+	@Override
+	public V $get(String index) {
+		return current.$get(index);
+	}
+
+	@Override
+	public synchronized void $set(int index, V value) {
+		ArrayImpl<V> next = current.copy();
+		next.$set(index, value);
+		current = next;
+	}
+
+	@Override
+	public void $set(String index, V value) {
+		$set(Integer.parseInt(index), value);
+	}
+
+	@Override
+	public int $length() {
+		return current.$length();
+	}
+
+	@Override
+	public synchronized void $length(int newLength) {
+		ArrayImpl<V> next = current.copy();
+		next.$length(newLength);
+		current = next;
+	}
+
+	@Override
+	public Array<V> concat(Array<V>... arrays) {
+		return wrap(current.concat(arrays));
+	}
+
+	@Override
+	public int indexOf(V element) {
+		return current.indexOf(element);
+	}
+
+	@Override
+	public int indexOf(V element, int start) {
+		return current.indexOf(element, start);
+	}
+
+	@Override
+	public String join() {
+		return current.join();
+	}
+
+	@Override
+	public String join(String separator) {
+		return current.join(separator);
+	}
+
+	@Override
+	public synchronized V pop() {
+		ArrayImpl<V> next = current.copy();
+		V value = next.pop();
+		current = next;
+		return value;
+	}
+
+	@Override
+	public synchronized int push(V... values) {
+		ArrayImpl<V> next = current.copy();
+		int length = next.push(values);
+		current = next;
+		return length;
+	}
+
+	@Override
+	public synchronized void reverse() {
+		ArrayImpl<V> next = current.copy();
+		next.reverse();
+		current = next;
+	}
+
+	@Override
+	public synchronized V shift() {
+		ArrayImpl<V> next = current.copy();
+		V value = next.shift();
+		current = next;
+		return value;
+	}
+
+	@Override
+	public Array<V> slice(int start) {
+		return wrap(current.slice(start));
+	}
+
+	@Override
+	public Array<V> slice(int start, int end) {
+		return wrap(current.slice(start, end));
+	}
+
+	@Override
+	public synchronized Array<V> splice(int start) {
+		ArrayImpl<V> next = current.copy();
+		Array<V> removed = next.splice(start);
+		current = next;
+		return wrap(removed);
+	}
+
+	@Override
+	public synchronized Array<V> splice(int start, int howMany) {
+		ArrayImpl<V> next = current.copy();
+		Array<V> removed = next.splice(start, howMany);
+		current = next;
+		return wrap(removed);
+	}
+
+	@Override
+	public synchronized Array<V> splice(int start, int howMany, V... values) {
+		ArrayImpl<V> next = current.copy();
+		Array<V> removed = next.splice(start, howMany, values);
+		current = next;
+		return wrap(removed);
+	}
+
+	@Override
+	public synchronized void sort(SortFunction<V> function) {
+		ArrayImpl<V> next = current.copy();
+		next.sort(function);
+		current = next;
+	}
+
+	@Override
+	public synchronized int unshift(V... values) {
+		ArrayImpl<V> next = current.copy();
+		int length = next.unshift(values);
+		current = next;
+		return length;
+	}
+
+	@Override
+	public void forEach(Callback1<V> callback) {
+		current.forEach(callback);
+	}
+
+	@Override
+	public String toString() {
+		return current.toString();
+	}
+}
@@ -0,0 +1,36 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.server;
+
+import org.stjs.javascript.Array;
+import org.stjs.javascript.Map;
+
+/**
+ * this implementor builds thread-safe collections: {@link ConcurrentArrayImpl} and {@link ConcurrentMapImpl}. It can be
+ * used directly, or registered in <code>META-INF/services/org.stjs.javascript.JSCollectionsImplementor</code> to be
+ * used by all the {@link org.stjs.javascript.JSCollections} builders.
+ */
+public class ConcurrentJSCollectionsImplementor extends JSCollectionsServerImplementor {
+	@Override
+	protected <V> Array<V> newArray(int capacity) {
+		return new ConcurrentArrayImpl<V>();
+	}
+
+	@Override
+	protected <K extends String, V> Map<K, V> newMap(int expectedSize) {
+		return new ConcurrentMapImpl<K, V>(expectedSize);
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.stjs.javascript.Map;
+
+/**
+ * This class implements a thread-safe {@link Map} for the server side, backed by a {@link ConcurrentHashMap}: the reads
+ * are not blocked and the writes of different keys do not contend. Each entry remembers when its key was added, so the
+ * keys are iterated in the same order as {@link MapImpl} (the array indexes first, then the insertion order). The
+ * iterations see a snapshot of the keys taken when they start. The keys cannot be null.
+ * 
+ * @param <V>
+ */
+public class ConcurrentMapImpl<K extends String, V> implements Map<K, V> {
+	private static final class Entry<K, V> {
+		private final K key;
+		private final long order;
+		private volatile V value;
+
+		private Entry(K key, long order, V value) {
+			this.key = key;
+			this.order = order;
+			this.value = value;
+		}
+	}
+
+	private static final Comparator<Entry<?, ?>> ORDER_COMPARATOR = new Comparator<Entry<?, ?>>() {
+		@Override
+		public int compare(Entry<?, ?> a, Entry<?, ?> b) {
+			return a.order < b.order ? -1 : (a.order == b.order ? 0 : 1);
+		}
+	};
+
+	private final ConcurrentHashMap<K, Entry<K, V>> map;
+
+	private final AtomicLong nextOrder = new AtomicLong();
+
+	public ConcurrentMapImpl() {
+		map = new ConcurrentHashMap<K, Entry<K, V>>();
+	}
+
+	/**
+	 * @param expectedSize
+	 *            the number of entries the map can hold before it needs to grow, 0 for a default capacity
+	 */
+	public ConcurrentMapImpl(int expectedSize) {
+		map = expectedSize > 0 ? new ConcurrentHashMap<K, Entry<K, V>>(expectedSize * 4 / 3 + 1)
+				: new ConcurrentHashMap<K, Entry<K, V>>();
+	}
+
+	@Override
+	public Iterator<K> iterator() {
+		List<Entry<K, V>> entries = new ArrayList<Entry<K, V>>(map.values());
+		Collections.sort(entries, ORDER_COMPARATOR);
+		List<K> indexes = new ArrayList<K>();
+		List<K> others = new ArrayList<K>(entries.size());
+		for (Entry<K, V> entry : entries) {
+			if (MapImpl.isArrayIndex(entry.key)) {
+				indexes.add(entry.key);
+			} else {
+				others.add(entry.key);
+			}
+		}
+		if (!indexes.isEmpty()) {
+			Collections.sort(indexes, MapImpl.INDEX_COMPARATOR);
+			indexes.addAll(others);
+			others = indexes;
+		}
+		final Iterator<K> it = others.iterator();
+		return new Iterator<K>() {
+			private K last;
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public K next() {
+				last = it.next();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				$delete(last);
+			}
+		};
+	}
+
+	@Override
+	public V $get(K key) {
+		Entry<K, V> entry = map.get(key);
+		return entry == null ? null : entry.value;
+	}
+
+	@Override
+	public void $put(K key, V value) {
+		Entry<K, V> entry = map.get(key);
+		if (entry == null) {
+			entry = map.putIfAbsent(key, new Entry<K, V>(key, nextOrder.getAndIncrement(), value));
+			if (entry == null) {
+				return;
+			}
+		}
+		entry.value = value;
+	}
+
+	@Override
+	public void $delete(K key) {
+		map.remove(key);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (K key : this) {
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(key).append('=').append($get(key));
+		}
+		return sb.append('}').toString();
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.server;
+
+import java.util.Arrays;
+
+import org.stjs.javascript.Array;
+
+/**
+ * This class implements the {@link Array} interface for integers on the server side, storing the values in a growing
+ * <code>int[]</code>. The values are boxed only when they are accessed through the generic {@link Array} methods;
+ * {@link #getInt(int)}, {@link #setInt(int, int)} and {@link #pushInt(int)} give a direct access to the
+ * primitive values. As in {@link ArrayImpl}, the elements can be null (see {@link PrimitiveArrayImpl}).
+ */
+public class IntArrayImpl extends PrimitiveArrayImpl<Integer> {
+	private int[] values;
+
+	public IntArrayImpl() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public IntArrayImpl(int initialCapacity) {
+		super(0);
+		values = new int[java.lang.Math.max(initialCapacity, 0)];
+	}
+
+	public IntArrayImpl(int[] values) {
+		super(values.length);
+		this.values = values.clone();
+	}
+
+	/**
+	 * @return the value at the given index, without boxing it, or 0 if the element is null
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is not between 0 and the length of the array
+	 */
+	public int getInt(int index) {
+		checkIndex(index);
+		return isNull(index) ? 0 : values[index];
+	}
+
+	/**
+	 * sets the value at the given index, growing the array if needed
+	 */
+	public void setInt(int index, int value) {
+		if (prepareSet(index)) {
+			values[index] = value;
+		}
+	}
+
+	/**
+	 * adds the value at the end of the array
+	 * @return the new length of the array
+	 */
+	public int pushInt(int value) {
+		int index = prepareAdd();
+		values[index] = value;
+		return index + 1;
+	}
+
+	/**
+	 * @return a copy of the values of the array, where the null elements are 0
+	 */
+	public int[] toIntArray() {
+		int[] copy = Arrays.copyOf(values, $length());
+		for (int i = nextNull(0); i >= 0; i = nextNull(i + 1)) {
+			copy[i] = 0;
+		}
+		return copy;
+	}
+
+	@Override
+	protected int capacity() {
+		return values.length;
+	}
+
+	@Override
+	protected void resize(int capacity) {
+		values = Arrays.copyOf(values, capacity);
+	}
+
+	@Override
+	protected Integer load(int index) {
+		return values[index];
+	}
+
+	@Override
+	protected void store(int index, Integer value) {
+		values[index] = value;
+	}
+
+	@Override
+	protected boolean valueEquals(int index, Integer element) {
+		return values[index] == element.intValue();
+	}
+
+	@Override
+	protected void appendValue(StringBuilder sb, int index) {
+		sb.append(values[index]);
+	}
+
+	@Override
+	protected void swapValues(int i, int j) {
+		int tmp = values[i];
+		values[i] = values[j];
+		values[j] = tmp;
+	}
+
+	@Override
+	protected void moveValues(int from, int to, int count) {
+		System.arraycopy(values, from, values, to, count);
+	}
+
+	@Override
+	protected void copyValues(int from, PrimitiveArrayImpl<Integer> dest, int to, int count) {
+		System.arraycopy(values, from, ((IntArrayImpl) dest).values, to, count);
+	}
+
+	@Override
+	protected PrimitiveArrayImpl<Integer> newArray(int capacity) {
+		return new IntArrayImpl(capacity);
+	}
+}
@@ -17,35 +17,68 @@ package org.stjs.server;
 
 import org.stjs.javascript.Array;
 import org.stjs.javascript.JSCollectionsImplementor;
+import org.stjs.javascript.JSPrimitiveArrayImplementor;
 import org.stjs.javascript.Map;
 
 /**
  * this class implements the contract for Javascript collection on the server side
  * @author acraciun
  */
-public class JSCollectionsServerImplementor implements JSCollectionsImplementor {
+public class JSCollectionsServerImplementor implements JSCollectionsImplementor, JSPrimitiveArrayImplementor {
+	/**
+	 * builds the arrays returned by this implementor. The subclasses can override it to build other implementations.
+	 */
+	protected <V> Array<V> newArray(int capacity) {
+		return new ArrayImpl<V>(capacity);
+	}
+
+	/**
+	 * builds the maps returned by this implementor. The subclasses can override it to build other implementations.
+	 */
+	protected <K extends String, V> Map<K, V> newMap(int expectedSize) {
+		return new MapImpl<K, V>(expectedSize);
+	}
+
 	@Override
 	public <V> Array<V> $array(V... values) {
-		Array<V> a = new ArrayImpl<V>();
-		a.splice(0, 0, values);
+		Array<V> a = newArray(values.length);
+		a.push(values);
 		return a;
 	}
 
+	/**
+	 * @return an array of numbers backed by a <code>double[]</code>, boxing the values only when they are accessed
+	 *         through the {@link Array} interface
+	 */
+	@Override
+	public DoubleArrayImpl $doubleArray(double... values) {
+		return new DoubleArrayImpl(values);
+	}
+
+	/**
+	 * @return an array of integers backed by an <code>int[]</code>, boxing the values only when they are accessed
+	 *         through the {@link Array} interface
+	 */
+	@Override
+	public IntArrayImpl $intArray(int... values) {
+		return new IntArrayImpl(values);
+	}
+
 	@Override
 	public <K extends String, V> Map<K, V> $map() {
-		return new MapImpl<K, V>();
+		return newMap(0);
 	}
 
 	@Override
 	public <K extends String, V> Map<K, V> $map(K k1, V v1) {
-		Map<K, V> m = new MapImpl<K, V>();
+		Map<K, V> m = newMap(1);
 		m.$put(k1, v1);
 		return m;
 	}
 
 	@Override
 	public <K extends String, V> Map<K, V> $map(K k1, V v1, K k2, V v2) {
-		Map<K, V> m = new MapImpl<K, V>();
+		Map<K, V> m = newMap(2);
 		m.$put(k1, v1);
 		m.$put(k2, v2);
 		return m;
@@ -53,7 +86,7 @@ public class JSCollectionsServerImplementor implements JSCollectionsImplementor
 
 	@Override
 	public <K extends String, V> Map<K, V> $map(K k1, V v1, K k2, V v2, K k3, V v3) {
-		Map<K, V> m = new MapImpl<K, V>();
+		Map<K, V> m = newMap(3);
 		m.$put(k1, v1);
 		m.$put(k2, v2);
 		m.$put(k3, v3);
@@ -62,7 +95,7 @@ public class JSCollectionsServerImplementor implements JSCollectionsImplementor
 
 	@Override
 	public <K extends String, V> Map<K, V> $map(K k1, V v1, K k2, V v2, K k3, V v3, K k4, V v4) {
-		Map<K, V> m = new MapImpl<K, V>();
+		Map<K, V> m = newMap(4);
 		m.$put(k1, v1);
 		m.$put(k2, v2);
 		m.$put(k3, v3);
@@ -72,7 +105,7 @@ public class JSCollectionsServerImplementor implements JSCollectionsImplementor
 
 	@Override
 	public <K extends String, V> Map<K, V> $map(K k1, V v1, K k2, V v2, K k3, V v3, K k4, V v4, K k5, V v5) {
-		Map<K, V> m = new MapImpl<K, V>();
+		Map<K, V> m = newMap(5);
 		m.$put(k1, v1);
 		m.$put(k2, v2);
 		m.$put(k3, v3);
@@ -84,13 +117,17 @@ public class JSCollectionsServerImplementor implements JSCollectionsImplementor
 	@Override
 	@SuppressWarnings("unchecked")
 	public <K extends String, V> Map<K, V> $map(K k1, V v1, K k2, V v2, K k3, V v3, K k4, V v4, K k5, V v5, K k6, Object... morePairs) {
-		Map<K, V> m = new MapImpl<K, V>();
+		Map<K, V> m = newMap(6 + morePairs.length / 2);
 		m.$put(k1, v1);
 		m.$put(k2, v2);
 		m.$put(k3, v3);
 		m.$put(k4, v4);
 		m.$put(k5, v5);
-		for (int i = 0; i < (morePairs.length - 1); i += 2) {
+		// morePairs starts with the value of k6
+		if (morePairs.length > 0) {
+			m.$put(k6, (V) morePairs[0]);
+		}
+		for (int i = 1; i < (morePairs.length - 1); i += 2) {
 			m.$put((K) morePairs[i], (V) morePairs[i + 1]);
 		}
 		return m;
@@ -15,42 +15,369 @@
  */
 package org.stjs.server;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.stjs.javascript.Map;
 
 /**
  * This class implements the {@link Map} interface to be used on the server side.
+ * <p>
+ * The keys and values are stored in two parallel arrays, in insertion order. Small maps are searched linearly; larger
+ * ones use an open addressing hash table of entry indexes. A deleted entry leaves a tombstone that is removed when the
+ * arrays are compacted. The keys are iterated in the same order as the Javascript engines: the array-index keys first,
+ * in ascending numeric order, then the other keys in insertion order.
  * 
  * @author acraciun
  * @param <V>
  */
 public class MapImpl<K extends String, V> implements Map<K, V> {
-	private final java.util.Map<K, V> map = new HashMap<K, V>();
+	/**
+	 * up to this number of entries, there is no hash table
+	 */
+	private static final int LINEAR_LIMIT = 8;
+
+	private static final int DEFAULT_CAPACITY = 4;
+
+	private static final Object REMOVED = new Object();
+
+	/**
+	 * marks in the table a slot that was used by a deleted entry
+	 */
+	private static final int DELETED_SLOT = -1;
+
+	static final Comparator<String> INDEX_COMPARATOR = new Comparator<String>() {
+		@Override
+		public int compare(String a, String b) {
+			if (a.length() != b.length()) {
+				return a.length() - b.length();
+			}
+			return a.compareTo(b);
+		}
+	};
+
+	/**
+	 * the keys in insertion order. The deleted entries are marked with REMOVED.
+	 */
+	private Object[] keys;
+
+	private Object[] values;
+
+	/**
+	 * the number of used slots in keys, including the deleted ones
+	 */
+	private int size;
+
+	/**
+	 * the number of entries in the map
+	 */
+	private int count;
+
+	/**
+	 * the hash table: each slot holds the index of the entry + 1, 0 if it's free or DELETED_SLOT. It's null for the
+	 * small maps.
+	 */
+	private int[] table;
+
+	/**
+	 * true if at least one key was an array index, that must be iterated before the others
+	 */
+	private boolean hasIndexKeys;
+
+	public MapImpl() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            the number of entries the map can hold before it needs to grow, 0 for a default capacity
+	 */
+	public MapImpl(int expectedSize) {
+		int capacity = expectedSize > 0 ? expectedSize : DEFAULT_CAPACITY;
+		keys = new Object[capacity];
+		values = new Object[capacity];
+		if (capacity > LINEAR_LIMIT) {
+			table = new int[tableCapacityFor(capacity)];
+		}
+	}
+
+	private static int tableCapacityFor(int entries) {
+		return Integer.highestOneBit(java.lang.Math.max(entries, LINEAR_LIMIT) * 2 - 1) << 1;
+	}
+
+	private static int hash(Object key) {
+		int h = key == null ? 0 : key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean sameKey(Object a, Object b) {
+		return a == b || (a != null && a != REMOVED && a.equals(b));
+	}
+
+	/**
+	 * @return true if the key is a canonical array index, i.e. a number between 0 and 2^32 - 2 with no leading zero
+	 */
+	static boolean isArrayIndex(Object key) {
+		if (!(key instanceof String)) {
+			return false;
+		}
+		String s = (String) key;
+		int length = s.length();
+		if ((length == 0) || (length > 10) || ((length > 1) && (s.charAt(0) == '0'))) {
+			return false;
+		}
+		for (int i = 0; i < length; ++i) {
+			char c = s.charAt(i);
+			if ((c < '0') || (c > '9')) {
+				return false;
+			}
+		}
+		return Long.parseLong(s) < 0xFFFFFFFFL;
+	}
+
+	private int find(Object key) {
+		if (table == null) {
+			for (int i = 0; i < size; ++i) {
+				if (sameKey(keys[i], key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		int mask = table.length - 1;
+		for (int slot = hash(key) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int entry = table[slot] - 1;
+			if ((entry >= 0) && sameKey(keys[entry], key)) {
+				return entry;
+			}
+		}
+		return -1;
+	}
+
+	private void insertInTable(int entry) {
+		int mask = table.length - 1;
+		int slot = hash(keys[entry]) & mask;
+		while (table[slot] > 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = entry + 1;
+	}
+
+	private void removeFromTable(int entry) {
+		int mask = table.length - 1;
+		for (int slot = hash(keys[entry]) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			if (table[slot] == entry + 1) {
+				table[slot] = DELETED_SLOT;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * rebuilds the hash table (dropping the deleted slots), or removes it if the map is small
+	 */
+	private void rebuildTable() {
+		if (keys.length <= LINEAR_LIMIT) {
+			table = null;
+			return;
+		}
+		table = new int[tableCapacityFor(keys.length)];
+		for (int i = 0; i < size; ++i) {
+			if (keys[i] != REMOVED) {
+				insertInTable(i);
+			}
+		}
+	}
+
+	/**
+	 * makes sure the map can hold the given number of entries without growing again
+	 */
+	public void ensureCapacity(int expectedSize) {
+		if (expectedSize > keys.length) {
+			compact(expectedSize);
+		}
+	}
+
+	/**
+	 * makes room for a new entry, either by removing the tombstones or by growing the arrays
+	 */
+	private void ensureRoom() {
+		if (size < keys.length) {
+			return;
+		}
+		if (count <= (size >> 1)) {
+			// more than half tombstones
+			compact(keys.length);
+		} else {
+			compact(keys.length + java.lang.Math.max(keys.length >> 1, 1));
+		}
+	}
+
+	private void compact(int capacity) {
+		Object[] newKeys = new Object[capacity];
+		Object[] newValues = new Object[capacity];
+		int n = 0;
+		for (int i = 0; i < size; ++i) {
+			if (keys[i] != REMOVED) {
+				newKeys[n] = keys[i];
+				newValues[n] = values[i];
+				++n;
+			}
+		}
+		keys = newKeys;
+		values = newValues;
+		size = n;
+		rebuildTable();
+	}
 
 	@Override
 	public Iterator<K> iterator() {
-		return map.keySet().iterator();
+		if (!hasIndexKeys) {
+			return new KeyIterator();
+		}
+		// the array indexes come first, in ascending order
+		List<K> indexes = new ArrayList<K>();
+		List<K> others = new ArrayList<K>();
+		for (int i = 0; i < size; ++i) {
+			if (keys[i] != REMOVED) {
+				@SuppressWarnings("unchecked")
+				K key = (K) keys[i];
+				if (isArrayIndex(key)) {
+					indexes.add(key);
+				} else {
+					others.add(key);
+				}
+			}
+		}
+		Collections.sort(indexes, INDEX_COMPARATOR);
+		indexes.addAll(others);
+		final Iterator<K> it = indexes.iterator();
+		return new Iterator<K>() {
+			private K last;
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public K next() {
+				last = it.next();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				$delete(last);
+			}
+		};
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public V $get(K key) {
-		return map.get(key);
+		int entry = find(key);
+		return entry < 0 ? null : (V) values[entry];
 	}
 
 	@Override
 	public void $put(K key, V value) {
-		map.put(key, value);
+		int entry = find(key);
+		if (entry >= 0) {
+			values[entry] = value;
+			return;
+		}
+		ensureRoom();
+		keys[size] = key;
+		values[size] = value;
+		if (table != null) {
+			insertInTable(size);
+		}
+		++size;
+		++count;
+		if (!hasIndexKeys && isArrayIndex(key)) {
+			hasIndexKeys = true;
+		}
 	}
 
 	@Override
 	public void $delete(K key) {
-		map.remove(key);
+		int entry = find(key);
+		if (entry < 0) {
+			return;
+		}
+		if (table != null) {
+			removeFromTable(entry);
+		}
+		keys[entry] = REMOVED;
+		values[entry] = null;
+		--count;
+		if (count == 0) {
+			Arrays.fill(keys, 0, size, null);
+			size = 0;
+			hasIndexKeys = false;
+			if (table != null) {
+				Arrays.fill(table, 0);
+			}
+		}
 	}
 
 	@Override
 	public String toString() {
-		return map.toString();
+		StringBuilder sb = new StringBuilder("{");
+		for (K key : this) {
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(key).append('=').append($get(key));
+		}
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * iterates the keys in insertion order, skipping the deleted entries
+	 */
+	private class KeyIterator implements Iterator<K> {
+		private int next = advance(0);
+		private int last = -1;
+
+		private int advance(int from) {
+			int i = from;
+			while ((i < size) && (keys[i] == REMOVED)) {
+				++i;
+			}
+			return i;
+		}
+
+		@Override
+		public boolean hasNext() {
+			next = advance(next);
+			return next < size;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public K next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next = advance(next + 1);
+			return (K) keys[last];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void remove() {
+			if ((last < 0) || (keys[last] == REMOVED)) {
+				throw new IllegalStateException();
+			}
+			$delete((K) keys[last]);
+		}
 	}
 }
@@ -0,0 +1,502 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.server;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import org.stjs.javascript.Array;
+import org.stjs.javascript.SortFunction;
+import org.stjs.javascript.functions.Callback1;
+
+/**
+ * This class implements the {@link Array} interface on top of an array of primitive numbers, that is managed by the
+ * subclasses. The values are boxed only when they are accessed through the generic {@link Array} methods. As in
+ * {@link ArrayImpl}, an element can be null: the null elements and the holes left when the array grows are kept in a
+ * bitmap, that is only allocated when the first null element appears.
+ *
+ * @param <V>
+ */
+public abstract class PrimitiveArrayImpl<V extends Number> implements Array<V>, RandomAccess {
+	protected static final int DEFAULT_CAPACITY = 10;
+
+	private int size;
+
+	/**
+	 * the indexes of the null elements, or null if there is none
+	 */
+	private BitSet nulls;
+
+	protected PrimitiveArrayImpl(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * @return the length of the primitive array
+	 */
+	protected abstract int capacity();
+
+	/**
+	 * replaces the primitive array by a copy with the given length
+	 */
+	protected abstract void resize(int capacity);
+
+	/**
+	 * @return the boxed value at the given index
+	 */
+	protected abstract V load(int index);
+
+	/**
+	 * stores the given value, that is never null, at the given index
+	 */
+	protected abstract void store(int index, V value);
+
+	/**
+	 * @return true if the value at the given index is equal to the given element, that is never null
+	 */
+	protected abstract boolean valueEquals(int index, V element);
+
+	protected abstract void appendValue(StringBuilder sb, int index);
+
+	protected abstract void swapValues(int i, int j);
+
+	/**
+	 * copies the values like {@link System#arraycopy}, inside this array
+	 */
+	protected abstract void moveValues(int from, int to, int count);
+
+	/**
+	 * copies the values like {@link System#arraycopy}, to an array of the same class
+	 */
+	protected abstract void copyValues(int from, PrimitiveArrayImpl<V> dest, int to, int count);
+
+	/**
+	 * @return an empty array of the same class
+	 */
+	protected abstract PrimitiveArrayImpl<V> newArray(int capacity);
+
+	/**
+	 * makes sure the array can hold the given number of elements without growing again
+	 */
+	public void ensureCapacity(int minCapacity) {
+		int capacity = capacity();
+		if (minCapacity > capacity) {
+			resize(java.lang.Math.max(minCapacity, capacity + (capacity >> 1) + 1));
+		}
+	}
+
+	/**
+	 * @return true if the element at the given index is null (or a hole)
+	 */
+	public boolean isNull(int index) {
+		return (nulls != null) && nulls.get(index);
+	}
+
+	/**
+	 * @return the index of the first null element starting from the given index, or -1 if there is none
+	 */
+	protected int nextNull(int from) {
+		if (nulls == null) {
+			return -1;
+		}
+		int index = nulls.nextSetBit(from);
+		return index < size ? index : -1;
+	}
+
+	private void setNulls(int from, int to) {
+		if (from >= to) {
+			return;
+		}
+		if (nulls == null) {
+			nulls = new BitSet(to);
+		}
+		nulls.set(from, to);
+	}
+
+	private void clearNulls(int from, int to) {
+		if ((nulls != null) && (from < to)) {
+			nulls.clear(from, to);
+		}
+	}
+
+	/**
+	 * moves the null flags like {@link #moveValues(int, int, int)} moves the values
+	 */
+	private void moveNulls(int from, int to, int count) {
+		if ((nulls == null) || (count <= 0)) {
+			return;
+		}
+		BitSet moved = nulls.get(from, from + count);
+		nulls.clear(to, to + count);
+		for (int i = moved.nextSetBit(0); i >= 0; i = moved.nextSetBit(i + 1)) {
+			nulls.set(to + i);
+		}
+	}
+
+	private void copyTo(int from, PrimitiveArrayImpl<V> dest, int to, int count) {
+		copyValues(from, dest, to, count);
+		for (int i = nextNull(from); (i >= 0) && (i < from + count); i = nextNull(i + 1)) {
+			dest.setNulls(to + i - from, to + i - from + 1);
+		}
+	}
+
+	private V element(int index) {
+		return isNull(index) ? null : load(index);
+	}
+
+	private void put(int index, V value) {
+		if (value == null) {
+			setNulls(index, index + 1);
+		} else {
+			store(index, value);
+			clearNulls(index, index + 1);
+		}
+	}
+
+	/**
+	 * grows the array up to the given index. The elements between the old end of the array and this index are holes.
+	 */
+	private void growTo(int index) {
+		ensureCapacity(index + 1);
+		setNulls(size, index);
+		size = index + 1;
+	}
+
+	/**
+	 * prepares the given index to receive a primitive value, growing the array if needed
+	 * @return false if the index is negative
+	 */
+	protected boolean prepareSet(int index) {
+		if (index < 0) {
+			return false;
+		}
+		if (index >= size) {
+			growTo(index);
+		} else {
+			clearNulls(index, index + 1);
+		}
+		return true;
+	}
+
+	/**
+	 * adds a slot at the end of the array to receive a primitive value
+	 * @return the index of the new slot
+	 */
+	protected int prepareAdd() {
+		ensureCapacity(size + 1);
+		return size++;
+	}
+
+	protected void checkIndex(int index) {
+		if ((index < 0) || (index >= size)) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + size);
+		}
+	}
+
+	private int startIndex(int start) {
+		if (start < 0) {
+			return java.lang.Math.max(size + start, 0);
+		}
+		return java.lang.Math.min(start, size);
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int current = 0;
+
+			@Override
+			public boolean hasNext() {
+				return current < size;
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return Integer.toString(current++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public V $get(int index) {
+		if ((index < 0) || (index >= size)) {
+			return null;
+		}
+		return element(index);
+	}
+
+	@Override
+	public V $get(String index) {
+		return $get(Integer.parseInt(index));
+	}
+
+	@Override
+	public void $set(int index, V value) {
+		if (index < 0) {
+			return;
+		}
+		if (index >= size) {
+			growTo(index);
+		}
+		put(index, value);
+	}
+
+	@Override
+	public void $set(String index, V value) {
+		$set(Integer.parseInt(index), value);
+	}
+
+	@Override
+	public int $length() {
+		return size;
+	}
+
+	@Override
+	public void $length(int newLength) {
+		if (newLength < 0) {
+			return;
+		}
+		if (newLength < size) {
+			clearNulls(newLength, size);
+			size = newLength;
+		} else if (newLength > size) {
+			growTo(newLength - 1);
+			// the last element is a hole too
+			setNulls(newLength - 1, newLength);
+		}
+	}
+
+	@Override
+	public Array<V> concat(Array<V>... arrays) {
+		int length = size;
+		for (Array<V> a : arrays) {
+			length += a.$length();
+		}
+		PrimitiveArrayImpl<V> ret = newArray(length);
+		ret.append(this);
+		for (Array<V> a : arrays) {
+			ret.append(a);
+		}
+		return ret;
+	}
+
+	/**
+	 * appends the elements of the given array. This array must have enough capacity.
+	 */
+	@SuppressWarnings("unchecked")
+	private void append(Array<V> a) {
+		if (a.getClass() == getClass()) {
+			PrimitiveArrayImpl<V> other = (PrimitiveArrayImpl<V>) a;
+			other.copyTo(0, this, size, other.size);
+			size += other.size;
+		} else {
+			for (int i = 0; i < a.$length(); ++i) {
+				put(size++, a.$get(i));
+			}
+		}
+	}
+
+	@Override
+	public int indexOf(V element) {
+		return indexOf(element, 0);
+	}
+
+	@Override
+	public int indexOf(V element, int start) {
+		int s = startIndex(start);
+		if (element == null) {
+			return nextNull(s);
+		}
+		for (int i = s; i < size; ++i) {
+			if (!isNull(i) && valueEquals(i, element)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String join() {
+		return join(",");
+	}
+
+	@Override
+	public String join(String separator) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < size; ++i) {
+			if (i != 0) {
+				sb.append(separator);
+			}
+			if (!isNull(i)) {
+				appendValue(sb, i);
+			}
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public V pop() {
+		if (size == 0) {
+			return null;
+		}
+		V value = element(--size);
+		clearNulls(size, size + 1);
+		return value;
+	}
+
+	@Override
+	public int push(V... values) {
+		ensureCapacity(size + values.length);
+		for (V value : values) {
+			put(size++, value);
+		}
+		return size;
+	}
+
+	@Override
+	public void reverse() {
+		for (int i = 0, j = size - 1; i < j; ++i, --j) {
+			swapValues(i, j);
+			boolean iNull = isNull(i);
+			boolean jNull = isNull(j);
+			if (iNull != jNull) {
+				nulls.flip(i);
+				nulls.flip(j);
+			}
+		}
+	}
+
+	@Override
+	public V shift() {
+		if (size == 0) {
+			return null;
+		}
+		V value = element(0);
+		moveValues(1, 0, size - 1);
+		moveNulls(1, 0, size - 1);
+		--size;
+		clearNulls(size, size + 1);
+		return value;
+	}
+
+	@Override
+	public Array<V> slice(int start) {
+		return slice(start, size);
+	}
+
+	@Override
+	public Array<V> slice(int start, int end) {
+		int s = startIndex(start);
+		int e = startIndex(end);
+		if (e <= s) {
+			return newArray(DEFAULT_CAPACITY);
+		}
+		PrimitiveArrayImpl<V> ret = newArray(e - s);
+		copyTo(s, ret, 0, e - s);
+		ret.size = e - s;
+		return ret;
+	}
+
+	@Override
+	public Array<V> splice(int start) {
+		return splice(start, size);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Array<V> splice(int start, int howMany) {
+		return splice(start, howMany, (V[]) new Number[0]);
+	}
+
+	@Override
+	public Array<V> splice(int start, int howMany, V... inserted) {
+		int s = startIndex(start);
+		int removed = java.lang.Math.min(java.lang.Math.max(howMany, 0), size - s);
+		PrimitiveArrayImpl<V> ret = newArray(removed);
+		copyTo(s, ret, 0, removed);
+		ret.size = removed;
+
+		int newSize = size - removed + inserted.length;
+		ensureCapacity(newSize);
+		moveValues(s + removed, s + inserted.length, size - s - removed);
+		moveNulls(s + removed, s + inserted.length, size - s - removed);
+		for (int i = 0; i < inserted.length; ++i) {
+			put(s + i, inserted[i]);
+		}
+		clearNulls(newSize, size);
+		size = newSize;
+		return ret;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void sort(final SortFunction<V> function) {
+		Object[] boxed = new Object[size];
+		for (int i = 0; i < size; ++i) {
+			boxed[i] = element(i);
+		}
+		Arrays.sort(boxed, new Comparator<Object>() {
+			@Override
+			public int compare(Object a, Object b) {
+				return function.$invoke((V) a, (V) b);
+			}
+		});
+		for (int i = 0; i < size; ++i) {
+			put(i, (V) boxed[i]);
+		}
+	}
+
+	@Override
+	public int unshift(V... inserted) {
+		splice(0, 0, inserted);
+		return size;
+	}
+
+	@Override
+	public void forEach(Callback1<V> callback) {
+		for (int i = 0; i < size; ++i) {
+			callback.$invoke(element(i));
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; ++i) {
+			if (i != 0) {
+				sb.append(", ");
+			}
+			if (isNull(i)) {
+				sb.append("null");
+			} else {
+				appendValue(sb, i);
+			}
+		}
+		return sb.append(']').toString();
+	}
+}
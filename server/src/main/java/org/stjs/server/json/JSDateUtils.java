@@ -15,16 +15,326 @@
  */
 package org.stjs.server.json;
 
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.TimeZone;
 
 import org.stjs.javascript.Date;
 
+/**
+ * this class encodes and decodes the dates exchanged as JSON with the client. The default format is
+ * <code>yyyy-MM-dd HH:mm:ss</code> in the local time zone, which is the format understood by stjs.converters.Date. The
+ * dates can also be sent as the number of milliseconds since epoch or as ISO-8601 strings. The decoding accepts all
+ * the formats.
+ * <p>
+ * The common dates are encoded and decoded directly, without {@link SimpleDateFormat} or {@link java.util.Calendar}.
+ * The other ones (before 1600 or after 9999, non-standard strings) go through a {@link SimpleDateFormat} kept for each
+ * thread. All the methods are thread-safe.
+ */
 public class JSDateUtils {
+	/**
+	 * the way the dates are written in JSON
+	 */
+	public enum Format {
+		/**
+		 * <code>yyyy-MM-dd HH:mm:ss</code> in the local time zone
+		 */
+		NORMALIZED,
+		/**
+		 * the number of milliseconds since 1970-01-01 00:00:00 UTC
+		 */
+		EPOCH_MILLIS,
+		/**
+		 * <code>yyyy-MM-ddTHH:mm:ss.SSSZ</code> in UTC, like the Javascript Date.toISOString
+		 */
+		ISO_8601
+	}
+
 	private final static String DEFAULT_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
 
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private static final int MIN_FAST_YEAR = 1600;
+	private static final int MAX_FAST_YEAR = 9999;
+
+	private static final ThreadLocal<SimpleDateFormat> FORMAT = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat(DEFAULT_DATE_PATTERN);
+		}
+	};
+
 	public static String toNormalizedString(Date d) {
-		// TODO - improve perf here
-		return new SimpleDateFormat(DEFAULT_DATE_PATTERN).format(new java.util.Date((long) d.getTime()));
+		long millis = (long) d.getTime();
+		TimeZone tz = TimeZone.getDefault();
+		char[] chars = new char[19];
+		if (!writeFields(millis + tz.getOffset(millis), chars, ' ')) {
+			SimpleDateFormat format = FORMAT.get();
+			format.setTimeZone(tz);
+			return format.format(new java.util.Date(millis));
+		}
+		return new String(chars);
+	}
+
+	public static String toISOString(Date d) {
+		long millis = (long) d.getTime();
+		char[] chars = new char[24];
+		if (!writeFields(millis, chars, 'T')) {
+			throw new IllegalArgumentException("The year of the date is out of the ISO-8601 range:" + millis);
+		}
+		chars[19] = '.';
+		int ms = (int) (millis - floorDiv(millis, 1000) * 1000);
+		writeDigits(chars, 20, ms, 3);
+		chars[23] = 'Z';
+		return new String(chars);
+	}
+
+	/**
+	 * @return the date in the given format: either a String or a Long for {@link Format#EPOCH_MILLIS}
+	 */
+	public static Object format(Date d, Format format) {
+		switch (format) {
+		case EPOCH_MILLIS:
+			return (long) d.getTime();
+		case ISO_8601:
+			return toISOString(d);
+		default:
+			return toNormalizedString(d);
+		}
+	}
+
+	public static Date fromMillis(long millis) {
+		return new Date(millis);
+	}
+
+	/**
+	 * parses a date in any of the supported formats. If the string cannot be parsed, the returned date is invalid
+	 * (i.e. its fields are NaN), like the one built by {@link Date#Date(String)}.
+	 */
+	public static Date parse(String s) {
+		if (s == null) {
+			return null;
+		}
+		int len = s.length();
+		if ((len == 19) && (s.charAt(10) == ' ')) {
+			long local = readFields(s);
+			if (local != Long.MIN_VALUE) {
+				return new Date(localToUTC(local, TimeZone.getDefault()));
+			}
+		} else if ((len > 10) && (s.charAt(10) == 'T')) {
+			long millis = parseISO(s);
+			if (millis != Long.MIN_VALUE) {
+				return new Date(millis);
+			}
+		} else if (isInteger(s)) {
+			return new Date(Long.parseLong(s));
+		}
+		return parseWithFormat(s);
+	}
+
+	private static Date parseWithFormat(String s) {
+		SimpleDateFormat format = FORMAT.get();
+		format.setTimeZone(TimeZone.getDefault());
+		try {
+			return new Date(format.parse(s).getTime());
+		} catch (ParseException e) {
+			// builds an invalid date
+			return new Date(s);
+		}
+	}
+
+	private static boolean isInteger(String s) {
+		int len = s.length();
+		int start = ((len > 1) && (s.charAt(0) == '-')) ? 1 : 0;
+		if ((len == 0) || (len - start > 18)) {
+			return false;
+		}
+		for (int i = start; i < len; ++i) {
+			char c = s.charAt(i);
+			if ((c < '0') || (c > '9')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * parses yyyy-MM-ddTHH:mm:ss followed by optional fractions of a second and an optional offset (Z, +HH:mm or
+	 * +HHmm). Without an offset the time is considered local.
+	 * 
+	 * @return the milliseconds since epoch or Long.MIN_VALUE if the string has not the expected format
+	 */
+	private static long parseISO(String s) {
+		if (s.length() < 19) {
+			return Long.MIN_VALUE;
+		}
+		long local = readFields(s);
+		if (local == Long.MIN_VALUE) {
+			return Long.MIN_VALUE;
+		}
+		int pos = 19;
+		int len = s.length();
+		if ((pos < len) && (s.charAt(pos) == '.')) {
+			++pos;
+			int start = pos;
+			int ms = 0;
+			while ((pos < len) && isDigit(s.charAt(pos))) {
+				if (pos - start < 3) {
+					ms = ms * 10 + (s.charAt(pos) - '0');
+				}
+				++pos;
+			}
+			if (pos == start) {
+				return Long.MIN_VALUE;
+			}
+			for (int i = pos - start; i < 3; ++i) {
+				ms *= 10;
+			}
+			local += ms;
+		}
+		if (pos == len) {
+			return localToUTC(local, TimeZone.getDefault());
+		}
+		char c = s.charAt(pos);
+		if ((c == 'Z') && (pos + 1 == len)) {
+			return local;
+		}
+		if ((c != '+') && (c != '-')) {
+			return Long.MIN_VALUE;
+		}
+		int hours = readNumber(s, pos + 1, 2);
+		int minutesPos = ((pos + 3 < len) && (s.charAt(pos + 3) == ':')) ? pos + 4 : pos + 3;
+		int minutes = readNumber(s, minutesPos, 2);
+		if ((hours < 0) || (minutes < 0) || (minutesPos + 2 != len)) {
+			return Long.MIN_VALUE;
+		}
+		long offset = (hours * 60L + minutes) * 60 * 1000;
+		return c == '+' ? local - offset : local + offset;
+	}
+
+	/**
+	 * reads the yyyy-MM-dd?HH:mm:ss fields at the beginning of the string.
+	 * 
+	 * @return the corresponding milliseconds as if the time was UTC, or Long.MIN_VALUE if the fields are missing or out
+	 *         of range
+	 */
+	private static long readFields(String s) {
+		if ((s.charAt(4) != '-') || (s.charAt(7) != '-') || (s.charAt(13) != ':') || (s.charAt(16) != ':')) {
+			return Long.MIN_VALUE;
+		}
+		int year = readNumber(s, 0, 4);
+		int month = readNumber(s, 5, 2);
+		int day = readNumber(s, 8, 2);
+		int hours = readNumber(s, 11, 2);
+		int minutes = readNumber(s, 14, 2);
+		int seconds = readNumber(s, 17, 2);
+		if ((year < MIN_FAST_YEAR) || (month < 1) || (month > 12) || (day < 1) || (day > daysInMonth(year, month))
+				|| (hours < 0) || (hours > 23) || (minutes < 0) || (minutes > 59) || (seconds < 0) || (seconds > 59)) {
+			return Long.MIN_VALUE;
+		}
+		return daysFromCivil(year, month, day) * MILLIS_PER_DAY + ((hours * 60L + minutes) * 60 + seconds) * 1000;
+	}
+
+	/**
+	 * @return the number made of the given count of digits or -1 if there are not enough digits
+	 */
+	private static int readNumber(String s, int pos, int count) {
+		if (pos + count > s.length()) {
+			return -1;
+		}
+		int n = 0;
+		for (int i = pos; i < pos + count; ++i) {
+			char c = s.charAt(i);
+			if (!isDigit(c)) {
+				return -1;
+			}
+			n = n * 10 + (c - '0');
+		}
+		return n;
+	}
+
+	private static boolean isDigit(char c) {
+		return (c >= '0') && (c <= '9');
+	}
+
+	/**
+	 * writes yyyy-MM-dd?HH:mm:ss for the given milliseconds, seen as UTC.
+	 * 
+	 * @return false if the year cannot be written this way
+	 */
+	private static boolean writeFields(long millis, char[] chars, char separator) {
+		long days = floorDiv(millis, MILLIS_PER_DAY);
+		int secondsOfDay = (int) ((millis - days * MILLIS_PER_DAY) / 1000);
+
+		// civil from days, see http://howardhinnant.github.io/date_algorithms.html
+		long z = days + 719468;
+		long era = floorDiv(z, 146097);
+		int dayOfEra = (int) (z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		if ((year < MIN_FAST_YEAR) || (year > MAX_FAST_YEAR)) {
+			return false;
+		}
+
+		writeDigits(chars, 0, (int) year, 4);
+		chars[4] = '-';
+		writeDigits(chars, 5, month, 2);
+		chars[7] = '-';
+		writeDigits(chars, 8, day, 2);
+		chars[10] = separator;
+		writeDigits(chars, 11, secondsOfDay / 3600, 2);
+		chars[13] = ':';
+		writeDigits(chars, 14, secondsOfDay / 60 % 60, 2);
+		chars[16] = ':';
+		writeDigits(chars, 17, secondsOfDay % 60, 2);
+		return true;
+	}
+
+	private static void writeDigits(char[] chars, int pos, int n, int count) {
+		for (int i = pos + count - 1; i >= pos; --i) {
+			chars[i] = (char) ('0' + n % 10);
+			n /= 10;
+		}
+	}
+
+	private static long daysFromCivil(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = y / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
 	}
 
+	private static int daysInMonth(int year, int month) {
+		if (month == 2) {
+			return ((year % 4 == 0) && ((year % 100 != 0) || (year % 400 == 0))) ? 29 : 28;
+		}
+		return ((month == 4) || (month == 6) || (month == 9) || (month == 11)) ? 30 : 31;
+	}
+
+	/**
+	 * converts a local time to UTC, using the offset of the time zone at that moment
+	 */
+	private static long localToUTC(long local, TimeZone tz) {
+		int offset = tz.getOffset(local - tz.getRawOffset());
+		long millis = local - offset;
+		int realOffset = tz.getOffset(millis);
+		if (realOffset != offset) {
+			millis = local - realOffset;
+		}
+		return millis;
+	}
+
+	private static long floorDiv(long a, long b) {
+		long q = a / b;
+		if ((a % b != 0) && ((a < 0) != (b < 0))) {
+			--q;
+		}
+		return q;
+	}
 }
@@ -15,20 +15,48 @@
  */
 package org.stjs.server.json.gson;
 
-import org.stjs.javascript.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+
 import org.stjs.javascript.Date;
-import org.stjs.javascript.Map;
-import org.stjs.server.ArrayImpl;
-import org.stjs.server.MapImpl;
+import org.stjs.server.json.JSDateUtils;
 
 import com.google.gson.GsonBuilder;
 
 public class GsonAdapters {
 	public static void addAll(GsonBuilder builder) {
-		builder.registerTypeAdapter(MapImpl.class, new JSMapAdapter());
-		builder.registerTypeAdapter(Map.class, new JSMapAdapter());
-		builder.registerTypeAdapter(ArrayImpl.class, new JSArrayAdapter());
-		builder.registerTypeAdapter(Array.class, new JSArrayAdapter());
-		builder.registerTypeAdapter(Date.class, new JSDateAdapter());
+		addAll(builder, JSDateUtils.Format.NORMALIZED);
+	}
+
+	/**
+	 * @param dateFormat
+	 *            the way the dates are written. They are read in any of the formats.
+	 */
+	public static void addAll(GsonBuilder builder, JSDateUtils.Format dateFormat) {
+		builder.registerTypeAdapterFactory(new JSMapTypeAdapterFactory());
+		builder.registerTypeAdapterFactory(new JSArrayTypeAdapterFactory());
+		builder.registerTypeAdapter(Date.class, new JSDateTypeAdapter(dateFormat));
+	}
+
+	/**
+	 * @return the type argument at the given position of a parameterized type, or Object if it's not known
+	 */
+	static Type typeArgument(Type type, int index) {
+		if (!(type instanceof ParameterizedType)) {
+			return Object.class;
+		}
+		Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+		if (index >= arguments.length) {
+			return Object.class;
+		}
+		Type argument = arguments[index];
+		if (argument instanceof WildcardType) {
+			argument = ((WildcardType) argument).getUpperBounds()[0];
+		}
+		if ((argument instanceof Class) || (argument instanceof ParameterizedType)) {
+			return argument;
+		}
+		return Object.class;
 	}
 }
@@ -17,9 +17,13 @@ package org.stjs.server.json.gson;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.RandomAccess;
 
 import org.stjs.javascript.Array;
 import org.stjs.javascript.JSCollections;
+import org.stjs.server.ConcurrentArrayImpl;
+import org.stjs.server.DoubleArrayImpl;
+import org.stjs.server.IntArrayImpl;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonDeserializationContext;
@@ -27,9 +31,16 @@ import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
+/**
+ * this adapter builds an intermediate tree of {@link com.google.gson.JsonElement}.
+ * 
+ * @deprecated {@link GsonAdapters#addAll(com.google.gson.GsonBuilder)} registers the streaming {@link JSArrayTypeAdapterFactory} instead.
+ */
+@Deprecated
 public class JSArrayAdapter implements JsonSerializer<Array<?>>, JsonDeserializer<Array<?>> {
 
 	@Override
@@ -38,11 +49,38 @@ public class JSArrayAdapter implements JsonSerializer<Array<?>>, JsonDeserialize
 			return null;
 		}
 		JsonArray js = elem.getAsJsonArray();
+		if (type == DoubleArrayImpl.class) {
+			DoubleArrayImpl doubles = new DoubleArrayImpl(js.size());
+			for (int i = 0; i < js.size(); ++i) {
+				if (js.get(i).isJsonNull()) {
+					doubles.$set(i, null);
+				} else {
+					doubles.pushDouble(js.get(i).getAsDouble());
+				}
+			}
+			return doubles;
+		}
+		if (type == IntArrayImpl.class) {
+			IntArrayImpl ints = new IntArrayImpl(js.size());
+			for (int i = 0; i < js.size(); ++i) {
+				if (js.get(i).isJsonNull()) {
+					ints.$set(i, null);
+				} else {
+					// like a cast to int, the decimals are dropped
+					ints.pushInt((int) js.get(i).getAsDouble());
+				}
+			}
+			return ints;
+		}
 		Type elementType = (type instanceof ParameterizedType) ? ((ParameterizedType) type).getActualTypeArguments()[0] : Object.class;
-		Array<Object> array = JSCollections.$array();
+		Object[] values = new Object[js.size()];
 		for (int i = 0; i < js.size(); ++i) {
-			array.push(ctx.deserialize(js.get(i), elementType));
+			values[i] = ctx.deserialize(js.get(i), elementType);
 		}
+		Type rawType = (type instanceof ParameterizedType) ? ((ParameterizedType) type).getRawType() : type;
+		Array<Object> array = rawType == ConcurrentArrayImpl.class ? new ConcurrentArrayImpl<Object>()
+				: JSCollections.<Object> $array();
+		array.push(values);
 
 		return array;
 	}
@@ -53,8 +91,24 @@ public class JSArrayAdapter implements JsonSerializer<Array<?>>, JsonDeserialize
 			return new JsonNull();
 		}
 		JsonArray js = new JsonArray();
-		for (String i : array) {
-			js.add(ctx.serialize(array.$get(i)));
+		if (array instanceof DoubleArrayImpl) {
+			DoubleArrayImpl doubles = (DoubleArrayImpl) array;
+			for (int i = 0, length = doubles.$length(); i < length; ++i) {
+				js.add(doubles.isNull(i) ? JsonNull.INSTANCE : new JsonPrimitive(doubles.getDouble(i)));
+			}
+		} else if (array instanceof IntArrayImpl) {
+			IntArrayImpl ints = (IntArrayImpl) array;
+			for (int i = 0, length = ints.$length(); i < length; ++i) {
+				js.add(ints.isNull(i) ? JsonNull.INSTANCE : new JsonPrimitive(ints.getInt(i)));
+			}
+		} else if (array instanceof RandomAccess) {
+			for (int i = 0, length = array.$length(); i < length; ++i) {
+				js.add(ctx.serialize(array.$get(i)));
+			}
+		} else {
+			for (String i : array) {
+				js.add(ctx.serialize(array.$get(i)));
+			}
 		}
 		return js;
 	}
@@ -0,0 +1,211 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.server.json.gson;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.RandomAccess;
+
+import org.stjs.javascript.Array;
+import org.stjs.javascript.JSCollections;
+import org.stjs.server.ArrayImpl;
+import org.stjs.server.ConcurrentArrayImpl;
+import org.stjs.server.DoubleArrayImpl;
+import org.stjs.server.IntArrayImpl;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * this factory builds the streaming adapters for the {@link Array} types. The adapter of the elements is resolved once
+ * for each parameterized type, and the elements are read and written directly, without an intermediate tree.
+ */
+public class JSArrayTypeAdapterFactory implements TypeAdapterFactory {
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+		Class<? super T> rawType = typeToken.getRawType();
+		if (!Array.class.isAssignableFrom(rawType)) {
+			return null;
+		}
+		if (rawType == DoubleArrayImpl.class) {
+			return (TypeAdapter) new DoubleArrayTypeAdapter();
+		}
+		if (rawType == IntArrayImpl.class) {
+			return (TypeAdapter) new IntArrayTypeAdapter();
+		}
+		Type elementType = GsonAdapters.typeArgument(typeToken.getType(), 0);
+		return (TypeAdapter) new ArrayTypeAdapter<Object>(gson, rawType, elementType);
+	}
+
+	private static class ArrayTypeAdapter<E> extends TypeAdapter<Array<E>> {
+		/**
+		 * the presized capacity is capped, so that a large array does not make all the next ones allocate (and keep) a
+		 * large storage. Beyond that, the arrays grow geometrically.
+		 */
+		private static final int MAX_SIZE_HINT = 64;
+
+		private final Class<?> rawType;
+		private final ValueWriter<E> elementWriter;
+		private final TypeAdapter<E> elementAdapter;
+
+		/**
+		 * length of the last decoded array, capped to MAX_SIZE_HINT. Gson caches the adapter for each type. It's only a
+		 * hint so it's not synchronized.
+		 */
+		private int sizeHint;
+
+		@SuppressWarnings("unchecked")
+		public ArrayTypeAdapter(Gson gson, Class<?> rawType, Type elementType) {
+			this.rawType = rawType;
+			this.elementAdapter = (TypeAdapter<E>) gson.getAdapter(TypeToken.get(elementType));
+			this.elementWriter = new ValueWriter<E>(gson, elementType, elementAdapter);
+		}
+
+		@Override
+		public void write(JsonWriter out, Array<E> array) throws IOException {
+			if (array == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginArray();
+			if (array instanceof RandomAccess) {
+				for (int i = 0, length = array.$length(); i < length; ++i) {
+					elementWriter.write(out, array.$get(i));
+				}
+			} else {
+				for (String i : array) {
+					elementWriter.write(out, array.$get(i));
+				}
+			}
+			out.endArray();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Array<E> read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			// the elements are appended to our own implementation, and copied once at the end to the other ones, as
+			// appending them one by one may be slow (e.g. the concurrent array copies all its elements at each push)
+			ArrayImpl<E> array = new ArrayImpl<E>(sizeHint);
+			int count = 0;
+			in.beginArray();
+			while (in.hasNext()) {
+				array.add(elementAdapter.read(in));
+				++count;
+			}
+			in.endArray();
+			sizeHint = java.lang.Math.min(count, MAX_SIZE_HINT);
+
+			if (rawType == ArrayImpl.class) {
+				return array;
+			}
+			if (rawType == ConcurrentArrayImpl.class) {
+				return new ConcurrentArrayImpl<E>().concat(array);
+			}
+			Array<E> result = JSCollections.$array();
+			return result.getClass() == ArrayImpl.class ? array : result.concat(array);
+		}
+	}
+
+	private static class DoubleArrayTypeAdapter extends TypeAdapter<DoubleArrayImpl> {
+		@Override
+		public void write(JsonWriter out, DoubleArrayImpl array) throws IOException {
+			if (array == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginArray();
+			for (int i = 0, length = array.$length(); i < length; ++i) {
+				if (array.isNull(i)) {
+					out.nullValue();
+				} else {
+					out.value(array.getDouble(i));
+				}
+			}
+			out.endArray();
+		}
+
+		@Override
+		public DoubleArrayImpl read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			DoubleArrayImpl array = new DoubleArrayImpl();
+			in.beginArray();
+			while (in.hasNext()) {
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					array.$set(array.$length(), null);
+				} else {
+					array.pushDouble(in.nextDouble());
+				}
+			}
+			in.endArray();
+			return array;
+		}
+	}
+
+	private static class IntArrayTypeAdapter extends TypeAdapter<IntArrayImpl> {
+		@Override
+		public void write(JsonWriter out, IntArrayImpl array) throws IOException {
+			if (array == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginArray();
+			for (int i = 0, length = array.$length(); i < length; ++i) {
+				if (array.isNull(i)) {
+					out.nullValue();
+				} else {
+					out.value(array.getInt(i));
+				}
+			}
+			out.endArray();
+		}
+
+		@Override
+		public IntArrayImpl read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			IntArrayImpl array = new IntArrayImpl();
+			in.beginArray();
+			while (in.hasNext()) {
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					array.$set(array.$length(), null);
+				} else {
+					// like a cast to int, the decimals are dropped
+					array.pushInt((int) in.nextDouble());
+				}
+			}
+			in.endArray();
+			return array;
+		}
+	}
+}
@@ -29,6 +29,12 @@ import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
+/**
+ * this adapter builds an intermediate tree of {@link com.google.gson.JsonElement}.
+ * 
+ * @deprecated {@link GsonAdapters#addAll(com.google.gson.GsonBuilder)} registers the streaming {@link JSDateTypeAdapter} instead.
+ */
+@Deprecated
 public class JSDateAdapter implements JsonSerializer<Date>, JsonDeserializer<Date> {
 
 	@Override
@@ -37,7 +43,10 @@ public class JSDateAdapter implements JsonSerializer<Date>, JsonDeserializer<Dat
 		if (elem == null) {
 			return null;
 		}
-		return new Date(elem.getAsString());
+		if (elem.isJsonPrimitive() && elem.getAsJsonPrimitive().isNumber()) {
+			return JSDateUtils.fromMillis(elem.getAsLong());
+		}
+		return JSDateUtils.parse(elem.getAsString());
 	}
 
 	@Override
@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.server.json.gson;
+
+import java.io.IOException;
+
+import org.stjs.javascript.Date;
+import org.stjs.server.json.JSDateUtils;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * this is the streaming adapter of {@link Date}, written as a string in the normalized format.
+ */
+public class JSDateTypeAdapter extends TypeAdapter<Date> {
+	private final JSDateUtils.Format format;
+
+	public JSDateTypeAdapter() {
+		this(JSDateUtils.Format.NORMALIZED);
+	}
+
+	public JSDateTypeAdapter(JSDateUtils.Format format) {
+		this.format = format;
+	}
+
+	@Override
+	public void write(JsonWriter out, Date date) throws IOException {
+		if (date == null) {
+			out.nullValue();
+			return;
+		}
+		Object formatted = JSDateUtils.format(date, format);
+		if (formatted instanceof Long) {
+			out.value((Long) formatted);
+		} else {
+			out.value((String) formatted);
+		}
+	}
+
+	@Override
+	public Date read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		if (in.peek() == JsonToken.NUMBER) {
+			return JSDateUtils.fromMillis(in.nextLong());
+		}
+		return JSDateUtils.parse(in.nextString());
+	}
+}
@@ -20,6 +20,7 @@ import java.lang.reflect.Type;
 
 import org.stjs.javascript.JSCollections;
 import org.stjs.javascript.Map;
+import org.stjs.server.ConcurrentMapImpl;
 
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
@@ -30,6 +31,12 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
+/**
+ * this adapter builds an intermediate tree of {@link com.google.gson.JsonElement}.
+ * 
+ * @deprecated {@link GsonAdapters#addAll(com.google.gson.GsonBuilder)} registers the streaming {@link JSMapTypeAdapterFactory} instead.
+ */
+@Deprecated
 public class JSMapAdapter implements JsonSerializer<Map<?, ?>>, JsonDeserializer<Map<?, ?>> {
 
 	@Override
@@ -39,7 +46,9 @@ public class JSMapAdapter implements JsonSerializer<Map<?, ?>>, JsonDeserializer
 		}
 		JsonObject js = elem.getAsJsonObject();
 		Type valueType = (type instanceof ParameterizedType) ? ((ParameterizedType) type).getActualTypeArguments()[1] : Object.class;
-		Map<String, Object> map = JSCollections.$map();
+		Type rawType = (type instanceof ParameterizedType) ? ((ParameterizedType) type).getRawType() : type;
+		Map<String, Object> map = rawType == ConcurrentMapImpl.class ? new ConcurrentMapImpl<String, Object>()
+				: JSCollections.<String, Object> $map();
 		for (java.util.Map.Entry<String, JsonElement> entry : js.entrySet()) {
 			map.$put(entry.getKey(), ctx.deserialize(entry.getValue(), valueType));
 		}
@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.server.json.gson;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.stjs.javascript.JSCollections;
+import org.stjs.javascript.Map;
+import org.stjs.server.ConcurrentMapImpl;
+import org.stjs.server.MapImpl;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * this factory builds the streaming adapters for the {@link Map} types. The adapter of the values is resolved once for
+ * each parameterized type, and the entries are read and written directly, without an intermediate tree.
+ */
+public class JSMapTypeAdapterFactory implements TypeAdapterFactory {
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+		Class<? super T> rawType = typeToken.getRawType();
+		if (!Map.class.isAssignableFrom(rawType)) {
+			return null;
+		}
+		Type valueType = GsonAdapters.typeArgument(typeToken.getType(), 1);
+		return (TypeAdapter) new MapTypeAdapter<Object>(gson, rawType, valueType);
+	}
+
+	private static class MapTypeAdapter<V> extends TypeAdapter<Map<String, V>> {
+		/**
+		 * the presized capacity is capped, so that a large map does not make all the next ones allocate (and keep) a
+		 * large storage. Beyond that, the maps grow geometrically.
+		 */
+		private static final int MAX_SIZE_HINT = 64;
+
+		private final Class<?> rawType;
+		private final ValueWriter<V> valueWriter;
+		private final TypeAdapter<V> valueAdapter;
+
+		/**
+		 * size of the last decoded map, capped to MAX_SIZE_HINT. Gson caches the adapter for each type. It's only a hint
+		 * so it's not synchronized.
+		 */
+		private int sizeHint;
+
+		@SuppressWarnings("unchecked")
+		public MapTypeAdapter(Gson gson, Class<?> rawType, Type valueType) {
+			this.rawType = rawType;
+			this.valueAdapter = (TypeAdapter<V>) gson.getAdapter(TypeToken.get(valueType));
+			this.valueWriter = new ValueWriter<V>(gson, valueType, valueAdapter);
+		}
+
+		@Override
+		public void write(JsonWriter out, Map<String, V> map) throws IOException {
+			if (map == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			for (String key : map) {
+				out.name(key);
+				valueWriter.write(out, map.$get(key));
+			}
+			out.endObject();
+		}
+
+		@Override
+		public Map<String, V> read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			Map<String, V> map;
+			if (rawType == ConcurrentMapImpl.class) {
+				map = new ConcurrentMapImpl<String, V>();
+			} else if (rawType == MapImpl.class) {
+				map = new MapImpl<String, V>(sizeHint);
+			} else {
+				map = JSCollections.$map();
+				if (map instanceof MapImpl) {
+					((MapImpl<String, V>) map).ensureCapacity(sizeHint);
+				}
+			}
+			int count = 0;
+			in.beginObject();
+			while (in.hasNext()) {
+				String key = in.nextName();
+				map.$put(key, valueAdapter.read(in));
+				++count;
+			}
+			in.endObject();
+			sizeHint = java.lang.Math.min(count, MAX_SIZE_HINT);
+			return map;
+		}
+	}
+}
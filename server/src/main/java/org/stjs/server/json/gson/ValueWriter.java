@@ -0,0 +1,49 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.server.json.gson;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * writes the elements of a collection with the adapter of their declared type, or with the adapter of their runtime
+ * type if it is a subclass of the declared type (like the default serialization does).
+ */
+class ValueWriter<E> {
+	private final Gson gson;
+	private final Class<?> declaredClass;
+	private final TypeAdapter<E> declaredAdapter;
+
+	public ValueWriter(Gson gson, Type declaredType, TypeAdapter<E> declaredAdapter) {
+		this.gson = gson;
+		this.declaredClass = TypeToken.get(declaredType).getRawType();
+		this.declaredAdapter = declaredAdapter;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void write(JsonWriter out, E value) throws IOException {
+		if ((value == null) || (value.getClass() == declaredClass) || (declaredClass == Object.class)) {
+			declaredAdapter.write(out, value);
+		} else {
+			((TypeAdapter<E>) gson.getAdapter(value.getClass())).write(out, value);
+		}
+	}
+}
@@ -16,6 +16,8 @@
 package org.stjs.server.json.jackson;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.JsonProcessingException;
@@ -24,12 +26,21 @@ import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.DeserializationContext;
 import org.codehaus.jackson.map.JsonDeserializer;
 import org.codehaus.jackson.map.TypeDeserializer;
+import org.codehaus.jackson.map.annotate.JsonCachable;
 import org.codehaus.jackson.map.deser.ContainerDeserializer;
 import org.codehaus.jackson.type.JavaType;
 import org.stjs.javascript.Array;
 import org.stjs.javascript.JSCollections;
+import org.stjs.server.ArrayImpl;
 
+/**
+ * the deserializer is cached by Jackson for each array type, so it can remember the length of the last decoded array
+ * and use it to presize the next one. The hint is capped, so that a large array does not make all the next ones
+ * allocate (and keep) a large storage; beyond that, the arrays grow geometrically.
+ */
+@JsonCachable
 public class JSArrayDeserializer extends ContainerDeserializer<Array<Object>> {
+	private static final int MAX_SIZE_HINT = 64;
 
 	// // Configuration
 
@@ -45,6 +56,11 @@ public class JSArrayDeserializer extends ContainerDeserializer<Array<Object>> {
 	 */
 	final TypeDeserializer _valueTypeDeserializer;
 
+	/**
+	 * length of the last decoded array, capped to MAX_SIZE_HINT. It's only a hint so it's not synchronized.
+	 */
+	private int _sizeHint;
+
 	public JSArrayDeserializer(JavaType collectionType, JsonDeserializer<Object> valueDeser,
 			TypeDeserializer valueTypeDeser) {
 		super(collectionType.getRawClass());
@@ -93,6 +109,17 @@ public class JSArrayDeserializer extends ContainerDeserializer<Array<Object>> {
 		JsonToken t;
 		final TypeDeserializer typeDeser = _valueTypeDeserializer;
 
+		// add the elements one by one to our own implementation, or buffer them to call push only once otherwise
+		ArrayImpl<Object> array = null;
+		List<Object> buffer = null;
+		if (result instanceof ArrayImpl) {
+			array = (ArrayImpl<Object>) result;
+			array.ensureCapacity(array.$length() + _sizeHint);
+		} else {
+			buffer = new ArrayList<Object>(java.lang.Math.max(_sizeHint, 10));
+		}
+		int count = 0;
+
 		while ((t = jp.nextToken()) != JsonToken.END_ARRAY) {
 			Object value;
 
@@ -103,8 +130,17 @@ public class JSArrayDeserializer extends ContainerDeserializer<Array<Object>> {
 			} else {
 				value = valueDes.deserializeWithType(jp, ctxt, typeDeser);
 			}
-			result.push(value);
+			if (array != null) {
+				array.add(value);
+			} else {
+				buffer.add(value);
+			}
+			++count;
+		}
+		if (buffer != null) {
+			result.push(buffer.toArray());
 		}
+		_sizeHint = java.lang.Math.min(count, MAX_SIZE_HINT);
 		return result;
 	}
 
@@ -16,12 +16,15 @@
 package org.stjs.server.json.jackson;
 
 import java.io.IOException;
+import java.util.RandomAccess;
 
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.JsonSerializer;
 import org.codehaus.jackson.map.SerializerProvider;
 import org.stjs.javascript.Array;
+import org.stjs.server.DoubleArrayImpl;
+import org.stjs.server.IntArrayImpl;
 
 public class JSArraySerializer extends JsonSerializer<Array<?>> {
 
@@ -38,8 +41,32 @@ public class JSArraySerializer extends JsonSerializer<Array<?>> {
 			return;
 		}
 		gen.writeStartArray();
-		for (String i : array) {
-			provider.defaultSerializeValue(array.$get(i), gen);
+		if (array instanceof DoubleArrayImpl) {
+			DoubleArrayImpl doubles = (DoubleArrayImpl) array;
+			for (int i = 0, length = doubles.$length(); i < length; ++i) {
+				if (doubles.isNull(i)) {
+					gen.writeNull();
+				} else {
+					gen.writeNumber(doubles.getDouble(i));
+				}
+			}
+		} else if (array instanceof IntArrayImpl) {
+			IntArrayImpl ints = (IntArrayImpl) array;
+			for (int i = 0, length = ints.$length(); i < length; ++i) {
+				if (ints.isNull(i)) {
+					gen.writeNull();
+				} else {
+					gen.writeNumber(ints.getInt(i));
+				}
+			}
+		} else if (array instanceof RandomAccess) {
+			for (int i = 0, length = array.$length(); i < length; ++i) {
+				provider.defaultSerializeValue(array.$get(i), gen);
+			}
+		} else {
+			for (String i : array) {
+				provider.defaultSerializeValue(array.$get(i), gen);
+			}
 		}
 		gen.writeEndArray();
 	}
@@ -19,15 +19,20 @@ import java.io.IOException;
 
 import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.DeserializationContext;
 import org.codehaus.jackson.map.JsonDeserializer;
 import org.stjs.javascript.Date;
+import org.stjs.server.json.JSDateUtils;
 
 public class JSDateDeserializer extends JsonDeserializer<Date> {
 
 	@Override
 	public Date deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
-		return new Date(jp.getText());
+		if (jp.getCurrentToken() == JsonToken.VALUE_NUMBER_INT) {
+			return JSDateUtils.fromMillis(jp.getLongValue());
+		}
+		return JSDateUtils.parse(jp.getText());
 	}
 
 }
@@ -25,6 +25,16 @@ import org.stjs.javascript.Date;
 import org.stjs.server.json.JSDateUtils;
 
 public class JSDateSerializer extends JsonSerializer<Date> {
+	private final JSDateUtils.Format format;
+
+	public JSDateSerializer() {
+		this(JSDateUtils.Format.NORMALIZED);
+	}
+
+	public JSDateSerializer(JSDateUtils.Format format) {
+		this.format = format;
+	}
+
 	@Override
 	public Class<Date> handledType() {
 		return Date.class;
@@ -37,7 +47,12 @@ public class JSDateSerializer extends JsonSerializer<Date> {
 			gen.writeNull();
 			return;
 		}
-		gen.writeString(JSDateUtils.toNormalizedString(value));
+		Object formatted = JSDateUtils.format(value, format);
+		if (formatted instanceof Long) {
+			gen.writeNumber((Long) formatted);
+		} else {
+			gen.writeString((String) formatted);
+		}
 	}
 
 }
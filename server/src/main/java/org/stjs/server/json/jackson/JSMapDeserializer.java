@@ -26,12 +26,21 @@ import org.codehaus.jackson.map.JsonDeserializer;
 import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.KeyDeserializer;
 import org.codehaus.jackson.map.TypeDeserializer;
+import org.codehaus.jackson.map.annotate.JsonCachable;
 import org.codehaus.jackson.map.deser.ContainerDeserializer;
 import org.codehaus.jackson.type.JavaType;
 import org.stjs.javascript.JSCollections;
 import org.stjs.javascript.Map;
+import org.stjs.server.MapImpl;
 
+/**
+ * the deserializer is cached by Jackson for each map type, so it can remember the size of the last decoded map and use
+ * it to presize the next one. The hint is capped, so that a large map does not make all the next ones allocate (and
+ * keep) a large storage; beyond that, the maps grow geometrically.
+ */
+@JsonCachable
 public class JSMapDeserializer extends ContainerDeserializer<Map<String, Object>> {
+	private static final int MAX_SIZE_HINT = 64;
 
 	final protected JavaType _mapType;
 
@@ -50,6 +59,11 @@ public class JSMapDeserializer extends ContainerDeserializer<Map<String, Object>
 	 */
 	final protected TypeDeserializer _valueTypeDeserializer;
 
+	/**
+	 * number of entries of the last decoded map, capped to MAX_SIZE_HINT. It's only a hint so it's not synchronized.
+	 */
+	private int _sizeHint;
+
 	/*
 	 * /********************************************************** /* Life-cycle
 	 * /**********************************************************
@@ -144,6 +158,10 @@ public class JSMapDeserializer extends ContainerDeserializer<Map<String, Object>
 		final KeyDeserializer keyDes = _keyDeserializer;
 		final JsonDeserializer<Object> valueDes = _valueDeserializer;
 		final TypeDeserializer typeDeser = _valueTypeDeserializer;
+		if ((result instanceof MapImpl) && (_sizeHint > 0)) {
+			((MapImpl<String, Object>) result).ensureCapacity(_sizeHint);
+		}
+		int count = 0;
 		for (; t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
 			// Must point to field name
 			String fieldName = jp.getCurrentName();
@@ -165,7 +183,9 @@ public class JSMapDeserializer extends ContainerDeserializer<Map<String, Object>
 			 * (and/or what to do, keep-first or keep-last)
 			 */
 			result.$put(key.toString(), value);
+			++count;
 		}
+		_sizeHint = java.lang.Math.min(count, MAX_SIZE_HINT);
 	}
 
 	// note: copied form BeanDeserializer; should try to share somehow...
@@ -21,6 +21,7 @@ import org.codehaus.jackson.map.Module;
 import org.codehaus.jackson.map.deser.StdDeserializerProvider;
 import org.codehaus.jackson.map.module.SimpleModule;
 import org.stjs.javascript.Date;
+import org.stjs.server.json.JSDateUtils;
 
 public class STJSModule {
 	private static class STJSSimpleModule extends SimpleModule {
@@ -31,10 +32,18 @@ public class STJSModule {
 	}
 
 	public static Module getModule() {
+		return getModule(JSDateUtils.Format.NORMALIZED);
+	}
+
+	/**
+	 * @param dateFormat
+	 *            the way the dates are written. They are read in any of the formats.
+	 */
+	public static Module getModule(JSDateUtils.Format dateFormat) {
 		SimpleModule module = new STJSSimpleModule("MyModule", new Version(1, 0, 0, null));
 		module.addSerializer(new JSArraySerializer());
 		module.addSerializer(new JSMapSerializer());
-		module.addSerializer(new JSDateSerializer());
+		module.addSerializer(new JSDateSerializer(dateFormat));
 		module.addDeserializer(Date.class, new JSDateDeserializer());
 		return module;
 	}
@@ -7,6 +7,7 @@ import java.util.Locale;
 
 import org.junit.Test;
 import org.stjs.javascript.Date;
+import org.stjs.server.json.JSDateUtils;
 
 public class DateTest {
 
@@ -27,6 +28,22 @@ public class DateTest {
 		assertEquals(18, (int) d.getUTCHours());
 	}
 
+	@Test
+	public void testDayAndOverflow() {
+		Date d = new Date(2011, 10, 10, 17, 10, 0, 0);
+		// Thursday
+		assertEquals(4, (int) d.getDay());
+
+		d.setDate(31);
+		assertEquals(11, (int) d.getMonth());
+		assertEquals(1, (int) d.getDate());
+		assertEquals(17, (int) d.getHours());
+
+		d.setMonth(12);
+		assertEquals(2012, (int) d.getFullYear());
+		assertEquals(0, (int) d.getMonth());
+	}
+
 	@Test
 	public void testInvalidDate() {
 		Locale.setDefault(Locale.GERMANY);
@@ -41,4 +58,21 @@ public class DateTest {
 		Date d = new Date("2011-11-10 10:00:00");
 		assertEquals(10, (int) d.getDate());
 	}
+
+	@Test
+	public void testNormalizedString() {
+		Date d = new Date(2011, 10, 10, 17, 10, 5, 0);
+		assertEquals("2011-11-10 17:10:05", JSDateUtils.toNormalizedString(d));
+		assertEquals(d.getTime(), JSDateUtils.parse("2011-11-10 17:10:05").getTime(), 0);
+		assertTrue(Double.isNaN(JSDateUtils.parse("abc").getTime()));
+	}
+
+	@Test
+	public void testISOString() {
+		Date d = new Date(1320858605123L);
+		assertEquals("2011-11-09T17:10:05.123Z", JSDateUtils.toISOString(d));
+		assertEquals(1320858605123L, (long) JSDateUtils.parse("2011-11-09T17:10:05.123Z").getTime());
+		assertEquals(1320858605000L, (long) JSDateUtils.parse("2011-11-09T18:10:05+01:00").getTime());
+		assertEquals(1320858605000L, (long) JSDateUtils.parse("1320858605000").getTime());
+	}
 }
@@ -13,6 +13,7 @@ import org.stjs.javascript.Array;
 import org.stjs.javascript.Date;
 import org.stjs.javascript.JSCollections;
 import org.stjs.javascript.Map;
+import org.stjs.server.json.JSDateUtils;
 import org.stjs.server.json.gson.GsonAdapters;
 
 import com.google.gson.Gson;
@@ -29,6 +30,29 @@ public class GsonTest {
 		assertEquals("[1,2,3]", s);
 	}
 
+	@Test
+	public void testSerializePrimitiveArray() {
+		GsonBuilder gsonBuilder = new GsonBuilder();
+		GsonAdapters.addAll(gsonBuilder);
+		Gson gson = gsonBuilder.create();
+		assertEquals("[1.5,2.0]", gson.toJson(new JSCollectionsServerImplementor().$doubleArray(1.5, 2)));
+		assertEquals("[1,2,3]", gson.toJson(new JSCollectionsServerImplementor().$intArray(1, 2, 3)));
+
+		IntArrayImpl withHole = new JSCollectionsServerImplementor().$intArray(1);
+		withHole.setInt(2, 3);
+		assertEquals("[1,null,3]", gson.toJson(withHole));
+	}
+
+	@Test
+	public void testDeserializePrimitiveArrayWithNulls() {
+		GsonBuilder gsonBuilder = new GsonBuilder();
+		GsonAdapters.addAll(gsonBuilder);
+		Gson gson = gsonBuilder.create();
+		assertEquals("[1.5, null, 2.0]", gson.fromJson("[1.5,null,2]", DoubleArrayImpl.class).toString());
+		// the decimals are dropped, like in a cast to int
+		assertEquals("[1, null, 2]", gson.fromJson("[1,null,2.5]", IntArrayImpl.class).toString());
+	}
+
 	@Test
 	public void testSerializeArrayPojo() throws JsonGenerationException, JsonMappingException, IOException {
 		GsonBuilder gsonBuilder = new GsonBuilder();
@@ -94,6 +118,18 @@ public class GsonTest {
 		assertEquals(1, (int) m.$get("a"));
 	}
 
+	@Test
+	public void testDeserializeArrayPojo() {
+		GsonBuilder gsonBuilder = new GsonBuilder();
+		GsonAdapters.addAll(gsonBuilder);
+		Gson gson = gsonBuilder.create();
+		Pojo2 p = gson.fromJson("{\"children\":[{\"n\":1},{\"n\":2}]}", Pojo2.class);
+		assertNotNull(p.getChildren());
+		assertEquals(2, p.getChildren().$length());
+		assertEquals(2, p.getChildren().$get(1).getN());
+		assertEquals("{\"children\":[{\"n\":1},{\"n\":2}]}", gson.toJson(p));
+	}
+
 	@Test
 	public void testDeserializeDate() {
 		GsonBuilder gsonBuilder = new GsonBuilder();
@@ -104,4 +140,14 @@ public class GsonTest {
 		assertEquals(10, (int) d.getMonth());
 	}
 
+	@Test
+	public void testDateFormats() {
+		GsonBuilder gsonBuilder = new GsonBuilder();
+		GsonAdapters.addAll(gsonBuilder, JSDateUtils.Format.EPOCH_MILLIS);
+		Gson gson = gsonBuilder.create();
+		assertEquals("1320858600000", gson.toJson(new Date(1320858600000L)));
+		assertEquals(1320858600000L, (long) gson.fromJson("1320858600000", Date.class).getTime());
+		assertEquals(1320858600000L, (long) gson.fromJson("\"2011-11-09T17:10:00Z\"", Date.class).getTime());
+	}
+
 }
@@ -3,10 +3,12 @@ package org.stjs.server;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 import org.stjs.javascript.Array;
 import org.stjs.javascript.JSCollections;
+import org.stjs.javascript.JSCollectionsImplementor;
 import org.stjs.javascript.Map;
 
 public class JSCollectionsTest {
@@ -44,6 +46,126 @@ public class JSCollectionsTest {
 		assertNull(array.$get(4));
 	}
 
+	@Test
+	public void testArrayImplQueue() {
+		Array<Integer> array = JSCollections.$array();
+		for (int i = 0; i < 100; ++i) {
+			array.push(i);
+			array.push(i);
+			assertEquals(i / 2, (int) array.shift());
+		}
+		assertEquals(100, array.$length());
+		array.unshift(-2, -1);
+		assertEquals(102, array.$length());
+		assertEquals(-2, (int) array.$get(0));
+		assertEquals(50, (int) array.$get(2));
+		assertEquals(99, (int) array.pop());
+
+		Array<Integer> removed = array.splice(1, 2, 7, 8, 9);
+		assertEquals("[-1, 50]", removed.toString());
+		assertEquals("[-2, 7, 8, 9, 50]", array.slice(0, 5).toString());
+		assertEquals("[98, 99]", array.slice(-2).toString());
+		assertEquals("[]", array.slice(3, 1).toString());
+	}
+
+	@Test
+	public void testArrayImplSparse() {
+		Array<Integer> array = JSCollections.$array(1, 2);
+		array.$set(10000000, 3);
+		assertEquals(10000001, array.$length());
+		assertEquals(2, (int) array.$get(1));
+		assertNull(array.$get(2));
+		assertEquals(3, (int) array.$get(10000000));
+
+		array.push(4);
+		assertEquals(10000002, array.$length());
+		assertEquals(4, (int) array.pop());
+		array.$length(5);
+		assertEquals(5, array.$length());
+		assertNull(array.$get(4));
+		assertEquals("1,2,,,", array.join());
+
+		array.$set(3, 5);
+		assertEquals("[1, 2, null, 5, null]", array.toString());
+		assertEquals(1, (int) array.shift());
+		assertEquals("[2, null, 5, null]", array.toString());
+	}
+
+	@Test
+	public void testDoubleArrayImpl() {
+		DoubleArrayImpl array = new JSCollectionsServerImplementor().$doubleArray(1, 2, 3);
+		assertEquals(3, array.$length());
+		assertEquals(2.0, array.getDouble(1), 0);
+		assertEquals(2.0, array.$get(1), 0);
+		assertNull(array.$get(3));
+
+		array.push(4.0, 5.0);
+		array.pushDouble(6);
+		// 1,2,3,4,5,6
+		assertEquals(6, array.$length());
+		assertEquals("1.0,2.0,3.0,4.0,5.0,6.0", array.join());
+
+		Array<Double> removed = array.splice(1, 2, 10.0);
+		// 1,10,4,5,6
+		assertEquals(2, removed.$length());
+		assertEquals(3.0, removed.$get(1), 0);
+		assertEquals(5, array.$length());
+		assertEquals(10.0, array.getDouble(1), 0);
+		assertEquals(4.0, array.getDouble(2), 0);
+
+		assertEquals(2, array.indexOf(4.0));
+		assertEquals("[4.0, 5.0]", array.slice(2, -1).toString());
+		assertEquals(1.0, array.shift(), 0);
+		assertEquals(6.0, array.pop(), 0);
+
+		// grows with holes, that are null like in ArrayImpl
+		array.setDouble(5, 7);
+		assertEquals(6, array.$length());
+		assertNull(array.$get(4));
+		assertEquals(0.0, array.getDouble(4), 0);
+		assertEquals("10.0,4.0,5.0,,,7.0", array.join());
+
+		array.$set(0, null);
+		assertNull(array.$get(0));
+		assertEquals(0, array.indexOf(null));
+		assertEquals(3, array.indexOf(null, 1));
+		assertEquals("[null, 4.0, 5.0, null, null, 7.0]", array.toString());
+		array.reverse();
+		assertEquals("[7.0, null, null, 5.0, 4.0, null]", array.toString());
+		assertEquals(7.0, array.shift(), 0);
+		assertNull(array.shift());
+		assertEquals("[null, 5.0, 4.0, null]", array.toString());
+		assertEquals("[null, 5.0]", array.splice(0, 2).toString());
+		assertEquals("[4.0, null]", array.toString());
+		array.setDouble(1, 8);
+		assertEquals(8.0, array.$get(1), 0);
+	}
+
+	@Test
+	public void testPrimitiveArraysFromJSCollections() {
+		Array<Double> doubles = JSCollections.$doubleArray(1.5, 2);
+		assertTrue(doubles instanceof DoubleArrayImpl);
+		assertEquals("1.5,2.0", doubles.join());
+		Array<Integer> ints = JSCollections.$intArray(1, 2);
+		assertTrue(ints instanceof IntArrayImpl);
+		assertEquals(2, (int) ints.$get(1));
+	}
+
+	@Test
+	public void testIntArrayImpl() {
+		IntArrayImpl array = new JSCollectionsServerImplementor().$intArray(3, 1, 2);
+		array.unshift(4);
+		// 4,3,1,2
+		assertEquals(4, array.$length());
+		assertEquals(4, array.getInt(0));
+		array.reverse();
+		// 2,1,3,4
+		assertEquals("2,1,3,4", array.join());
+		array.$length(2);
+		assertEquals(2, array.toIntArray().length);
+		assertEquals(1, (int) array.concat(new JSCollectionsServerImplementor().$intArray(5)).$get(1));
+	}
+
 	@Test
 	public void testMapImpl() {
 		Map<String, Integer> map = JSCollections.$map("a", 1);
@@ -61,4 +183,76 @@ public class JSCollectionsTest {
 		assertNull(map.$get("b"));
 
 	}
+
+	@Test
+	public void testMapImplOrder() {
+		Map<String, Integer> map = JSCollections.$map("b", 1, "a", 2, "10", 3, "2", 4);
+		map.$put("c", 5);
+		map.$delete("a");
+		map.$put("a", 6);
+		StringBuilder keys = new StringBuilder();
+		for (String key : map) {
+			keys.append(key).append(' ');
+		}
+		// the array indexes first, then the insertion order
+		assertEquals("2 10 b c a ", keys.toString());
+		assertEquals(6, (int) map.$get("a"));
+	}
+
+	@Test
+	public void testMapImplLarge() {
+		Map<String, Integer> map = JSCollections.$map();
+		for (int i = 0; i < 1000; ++i) {
+			map.$put("k" + i, i);
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			map.$delete("k" + i);
+		}
+		assertNull(map.$get("k10"));
+		assertEquals(11, (int) map.$get("k11"));
+		int n = 0;
+		for (String key : map) {
+			assertEquals("k" + (2 * n + 1), key);
+			++n;
+		}
+		assertEquals(500, n);
+	}
+
+	@Test
+	public void testConcurrentCollections() throws InterruptedException {
+		JSCollectionsImplementor implementor = new ConcurrentJSCollectionsImplementor();
+		final Map<String, Integer> map = implementor.$map("b", 1, "a", 2);
+		final Array<Integer> array = implementor.$array(1, 2, 3);
+		assertTrue(map instanceof ConcurrentMapImpl);
+		assertTrue(array instanceof ConcurrentArrayImpl);
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; ++t) {
+			final String prefix = "k" + t + "_";
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 100; ++i) {
+						map.$put(prefix + i, i);
+						array.push(i);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(403, array.$length());
+		assertEquals(5, (int) map.$get("k3_5"));
+
+		int count = 0;
+		for (String key : map) {
+			if (count == 0) {
+				assertEquals("b", key);
+			}
+			++count;
+		}
+		assertEquals(402, count);
+	}
 }
@@ -26,6 +26,19 @@ public class JacksonTest {
 		assertEquals("[1,2,3]", s);
 	}
 
+	@Test
+	public void testSerializePrimitiveArray() throws JsonGenerationException, JsonMappingException, IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(STJSModule.getModule());
+
+		assertEquals("[1.5,2.0]", mapper.writeValueAsString(new JSCollectionsServerImplementor().$doubleArray(1.5, 2)));
+		assertEquals("[1,2,3]", mapper.writeValueAsString(new JSCollectionsServerImplementor().$intArray(1, 2, 3)));
+
+		DoubleArrayImpl withNull = new JSCollectionsServerImplementor().$doubleArray(1.5, 2);
+		withNull.$set(0, null);
+		assertEquals("[null,2.0]", mapper.writeValueAsString(withNull));
+	}
+
 	@Test
 	public void testSerializeArrayPojo() throws JsonGenerationException, JsonMappingException, IOException {
 		ObjectMapper mapper = new ObjectMapper();
@@ -95,6 +108,23 @@ public class JacksonTest {
 		assertEquals(2, (int) a.$get(1));
 	}
 
+	@Test
+	public void testDeserializeArraysReusingDeserializer() throws JsonParseException, JsonMappingException, IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(STJSModule.getModule());
+		StringBuilder json = new StringBuilder("[0");
+		for (int i = 1; i < 1000; ++i) {
+			json.append(',').append(i);
+		}
+		json.append(']');
+		for (String s : new String[] { json.toString(), "[1,2]", json.toString() }) {
+			Array<Integer> a = mapper.readValue(s,
+					mapper.getTypeFactory().constructCollectionLikeType(Array.class, Integer.class));
+			assertEquals(s.equals("[1,2]") ? 2 : 1000, a.$length());
+			assertEquals(1, (int) a.$get(1));
+		}
+	}
+
 	@Test
 	public void testDeserializeArrayChildren() throws JsonParseException, JsonMappingException, IOException {
 		ObjectMapper mapper = new ObjectMapper();
@@ -117,6 +147,23 @@ public class JacksonTest {
 		assertEquals(1, (int) m.$get("a"));
 	}
 
+	@Test
+	public void testDeserializeMapsReusingDeserializer() throws JsonParseException, JsonMappingException, IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(STJSModule.getModule());
+		StringBuilder json = new StringBuilder("{\"k0\":0");
+		for (int i = 1; i < 100; ++i) {
+			json.append(",\"k").append(i).append("\":").append(i);
+		}
+		json.append('}');
+		for (int n = 0; n < 2; ++n) {
+			Map<String, Integer> m = mapper.readValue(json.toString(),
+					mapper.getTypeFactory().constructMapLikeType(Map.class, String.class, Integer.class));
+			assertEquals(99, (int) m.$get("k99"));
+			assertEquals(42, (int) m.$get("k42"));
+		}
+	}
+
 	@Test
 	public void testDeserializeMapChildren() throws JsonParseException, JsonMappingException, IOException {
 		ObjectMapper mapper = new ObjectMapper();
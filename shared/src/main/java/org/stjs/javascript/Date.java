@@ -18,173 +18,288 @@ package org.stjs.javascript;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.util.Locale;
 import java.util.TimeZone;
 
 /**
- * this date is implemented using a java {@link Calendar}. the aim of this class is to offer a similar behavior to the
- * Javascript date.
+ * this date keeps only the number of milliseconds since epoch, like the Javascript date. The local and UTC fields are
+ * computed from it when they are needed, using the default time zone of the JVM for the local ones. The aim of this
+ * class is to offer a similar behavior to the Javascript date.
  * 
  * @author acraciun
  * 
  */
 public class Date {
-	private Calendar calendar;
-	private Calendar utc;
 	private final static String DEFAULT_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
 
+	// SimpleDateFormat is not thread-safe and it's expensive to build
+	private final static ThreadLocal<SimpleDateFormat> DEFAULT_DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat(DEFAULT_DATE_PATTERN);
+		}
+	};
+
+	private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+
+	/**
+	 * the value of an invalid date, for which all the fields are NaN
+	 */
+	private static final long INVALID = Long.MIN_VALUE;
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private static final int YEAR = 0;
+	private static final int MONTH = 1;
+	private static final int DATE = 2;
+	private static final int DAY = 3;
+	private static final int HOURS = 4;
+	private static final int MINUTES = 5;
+	private static final int SECONDS = 6;
+	private static final int MILLISECONDS = 7;
+
+	private long time;
+
 	public Date() {
-		calendar = Calendar.getInstance();
+		time = System.currentTimeMillis();
 	}
 
 	public Date(long milliseconds) {
-		getUTC(true).setTimeInMillis(milliseconds);
+		time = milliseconds;
 	}
 
 	public Date(String dateString) {
 		// XXX in fact the format of the date seems to be platform dependent!. we use the standard format
 		java.util.Date d = null;
 		try {
-			d = new SimpleDateFormat(DEFAULT_DATE_PATTERN).parse(dateString);
+			SimpleDateFormat format = DEFAULT_DATE_FORMAT.get();
+			format.setTimeZone(TimeZone.getDefault());
+			d = format.parse(dateString);
 		} catch (ParseException e) {
 		}
-		if (d != null) {
-			calendar = Calendar.getInstance();
-			calendar.setTime(d);
-		} else {
-			// all the fiels should return NaN afterwards
-			calendar = null;
-		}
+		// all the fiels should return NaN if the string is not valid
+		time = d != null ? d.getTime() : INVALID;
 	}
 
 	public Date(int year, int month, int day, int hours, int minutes, int seconds, int ms) {
-		calendar = new GregorianCalendar(year, month, day, hours, minutes, seconds);
-		calendar.set(Calendar.MILLISECOND, ms);
-	}
-
-	private Calendar getUTC(boolean forceCreate) {
-		if (utc == null) {
-			if (calendar != null) {
-				utc = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-				utc.setTimeInMillis(calendar.getTimeInMillis());
-			} else if (forceCreate) {
-				utc = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-			}
+		time = toUTC(compose(year, month, day, hours, minutes, seconds, ms), TimeZone.getDefault());
+	}
+
+	/**
+	 * @return the milliseconds since epoch of the given fields. The fields out of range are carried over to the next
+	 *         ones, like the Javascript date (and the lenient {@link java.util.Calendar}) does.
+	 */
+	private static long compose(long year, long month, long day, long hours, long minutes, long seconds, long ms) {
+		year += floorDiv(month, 12);
+		month -= floorDiv(month, 12) * 12;
+		long days = daysFromCivil(year, (int) month + 1, 1) + day - 1;
+		return days * MILLIS_PER_DAY + ((hours * 60 + minutes) * 60 + seconds) * 1000 + ms;
+	}
+
+	/**
+	 * converts a local time to UTC, using the offset of the time zone at that moment
+	 */
+	private static long toUTC(long local, TimeZone tz) {
+		int offset = tz.getOffset(local - tz.getRawOffset());
+		long millis = local - offset;
+		int realOffset = tz.getOffset(millis);
+		if (realOffset != offset) {
+			millis = local - realOffset;
 		}
-		return utc;
+		return millis;
 	}
 
-	private Calendar getCalendar(boolean forceCreate) {
-		if (calendar == null) {
-			if (utc != null) {
-				calendar = Calendar.getInstance();
-				calendar.setTimeInMillis(utc.getTimeInMillis());
-			} else if (forceCreate) {
-				calendar = Calendar.getInstance();
-			}
-		}
-		return calendar;
+	private long toLocal(boolean utc) {
+		return utc ? time : time + TimeZone.getDefault().getOffset(time);
 	}
 
-	private double getField(Calendar c, int field) {
-		if (c == null) {
+	private double getField(boolean utc, int field) {
+		if (time == INVALID) {
 			return Double.NaN;
 		}
-		return c.get(field);
+		long t = toLocal(utc);
+		long days = floorDiv(t, MILLIS_PER_DAY);
+		int ms = (int) (t - days * MILLIS_PER_DAY);
+		switch (field) {
+		case YEAR:
+			return civilFromDays(days) >> 9;
+		case MONTH:
+			return ((civilFromDays(days) >> 5) & 15) - 1;
+		case DATE:
+			return civilFromDays(days) & 31;
+		case DAY:
+			// 1970-01-01 was a Thursday
+			return floorMod(days + 4, 7);
+		case HOURS:
+			return ms / 3600000;
+		case MINUTES:
+			return ms / 60000 % 60;
+		case SECONDS:
+			return ms / 1000 % 60;
+		default:
+			return ms % 1000;
+		}
 	}
 
-	private void setField(Calendar c, int field, int n) {
-		if (c == null) {
-			throw new IllegalStateException("The calendar shold not be null");
+	private void setField(boolean utc, int field, int n) {
+		if (time == INVALID) {
+			time = System.currentTimeMillis();
+		}
+		TimeZone tz = utc ? GMT : TimeZone.getDefault();
+		long t = time + tz.getOffset(time);
+		long days = floorDiv(t, MILLIS_PER_DAY);
+		int ms = (int) (t - days * MILLIS_PER_DAY);
+		int civil = civilFromDays(days);
+
+		long year = civil >> 9;
+		long month = ((civil >> 5) & 15) - 1;
+		long date = civil & 31;
+		long hours = ms / 3600000;
+		long minutes = ms / 60000 % 60;
+		long seconds = ms / 1000 % 60;
+		long millis = ms % 1000;
+		switch (field) {
+		case YEAR:
+			year = n;
+			break;
+		case MONTH:
+			month = n;
+			break;
+		case DATE:
+			date = n;
+			break;
+		case HOURS:
+			hours = n;
+			break;
+		case MINUTES:
+			minutes = n;
+			break;
+		case SECONDS:
+			seconds = n;
+			break;
+		default:
+			millis = n;
 		}
-		c.set(field, n);
-		// set the other calendar to null to force recalculation
-		if (c == calendar) {
-			utc = null;
-		} else {
-			calendar = null;
+		time = toUTC(compose(year, month, date, hours, minutes, seconds, millis), tz);
+	}
+
+	/**
+	 * see http://howardhinnant.github.io/date_algorithms.html
+	 * 
+	 * @return the year, month (1-12) and day of month of the given day since epoch, packed as year << 9 | month << 5 |
+	 *         day
+	 */
+	private static int civilFromDays(long days) {
+		long z = days + 719468;
+		long era = floorDiv(z, 146097);
+		int dayOfEra = (int) (z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+		return (year << 9) | (month << 5) | day;
+	}
+
+	private static long daysFromCivil(long year, int month, int day) {
+		long y = month <= 2 ? year - 1 : year;
+		long era = floorDiv(y, 400);
+		int yearOfEra = (int) (y - era * 400);
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	private static long floorDiv(long a, long b) {
+		long q = a / b;
+		if ((a % b != 0) && ((a < 0) != (b < 0))) {
+			--q;
 		}
+		return q;
+	}
+
+	private static long floorMod(long a, long b) {
+		return a - floorDiv(a, b) * b;
 	}
 
 	public double getDate() {
-		return getField(getCalendar(false), Calendar.DAY_OF_MONTH);
+		return getField(false, DATE);
 	}
 
 	public double getDay() {
-		return getField(getCalendar(false), Calendar.DAY_OF_WEEK);
+		return getField(false, DAY);
 	}
 
 	public double getFullYear() {
-		return getField(getCalendar(false), Calendar.YEAR);
+		return getField(false, YEAR);
 	}
 
 	public double getHours() {
-		return getField(getCalendar(false), Calendar.HOUR_OF_DAY);
+		return getField(false, HOURS);
 	}
 
 	public double getMilliseconds() {
-		return getField(getCalendar(false), Calendar.MILLISECOND);
+		return getField(false, MILLISECONDS);
 	}
 
 	public double getMinutes() {
-		return getField(getCalendar(false), Calendar.MINUTE);
+		return getField(false, MINUTES);
 	}
 
 	public double getMonth() {
-		return getField(getCalendar(false), Calendar.MONTH);
+		return getField(false, MONTH);
 	}
 
 	public double getSeconds() {
-		return getField(getCalendar(false), Calendar.SECOND);
+		return getField(false, SECONDS);
 	}
 
 	public double getTime() {
-		if (getCalendar(false) != null) {
-			return calendar.getTimeInMillis();
+		if (time != INVALID) {
+			return time;
 		}
 		return Double.NaN;
 	}
 
 	public double getTimezoneOffset() {
 		// in minutes
-		if (getCalendar(false) != null) {
-			return -calendar.getTimeZone().getRawOffset() / 1000 / 60;
+		if (time != INVALID) {
+			return -TimeZone.getDefault().getOffset(time) / 1000 / 60;
 		}
 		return Double.NaN;
 	}
 
 	public double getUTCDate() {
-		return getField(getUTC(false), Calendar.DAY_OF_MONTH);
+		return getField(true, DATE);
 	}
 
 	public double getUTCDay() {
-		return getField(getUTC(false), Calendar.DAY_OF_WEEK);
+		return getField(true, DAY);
 	}
 
 	public double getUTCFullYear() {
-		return getField(getUTC(false), Calendar.YEAR);
+		return getField(true, YEAR);
 	}
 
 	public double getUTCHours() {
-		return getUTC(false).get(Calendar.HOUR_OF_DAY);
+		return getField(true, HOURS);
 	}
 
 	public double getUTCMilliseconds() {
-		return getField(getUTC(false), Calendar.MILLISECOND);
+		return getField(true, MILLISECONDS);
 	}
 
 	public double getUTCMinutes() {
-		return getField(getUTC(false), Calendar.MINUTE);
+		return getField(true, MINUTES);
 	}
 
 	public double getUTCMonth() {
-		return getField(getUTC(false), Calendar.MONTH);
+		return getField(true, MONTH);
 	}
 
 	public double getUTCSeconds() {
-		return getField(getUTC(false), Calendar.SECOND);
+		return getField(true, SECONDS);
 	}
 
 	public double getYear() {
@@ -196,74 +311,79 @@ public class Date {
 	}
 
 	public void setDate(int n) {
-		setField(getCalendar(true), Calendar.DAY_OF_WEEK, n);
+		setField(false, DATE, n);
 	}
 
 	public void setFullYear(int n) {
-		setField(getCalendar(true), Calendar.YEAR, n);
+		setField(false, YEAR, n);
 	}
 
 	public void setHours(int n) {
-		setField(getCalendar(true), Calendar.HOUR_OF_DAY, n);
+		setField(false, HOURS, n);
 	}
 
 	public void setMilliseconds(int n) {
-		setField(getCalendar(true), Calendar.MILLISECOND, n);
+		setField(false, MILLISECONDS, n);
 	}
 
 	public void setMinutes(int n) {
-		setField(getCalendar(true), Calendar.MINUTE, n);
+		setField(false, MINUTES, n);
 	}
 
 	public void setMonth(int n) {
-		setField(getCalendar(true), Calendar.MONTH, n);
+		setField(false, MONTH, n);
 	}
 
 	public void setSeconds(int n) {
-		setField(getCalendar(true), Calendar.SECOND, n);
+		setField(false, SECONDS, n);
 	}
 
 	public void setTime(int n) {
-		getCalendar(true).setTimeInMillis(n);
+		time = n;
 	}
 
 	public void setUTCDate(int n) {
-		setField(getUTC(true), Calendar.DAY_OF_MONTH, n);
+		setField(true, DATE, n);
 	}
 
 	public void setUTCFullYear(int n) {
-		setField(getUTC(true), Calendar.YEAR, n);
+		setField(true, YEAR, n);
 	}
 
 	public void setUTCHours(int n) {
-		setField(getUTC(true), Calendar.HOUR_OF_DAY, n);
+		setField(true, HOURS, n);
 	}
 
 	public void setUTCMilliseconds(int n) {
-		setField(getUTC(true), Calendar.MILLISECOND, n);
+		setField(true, MILLISECONDS, n);
 	}
 
 	public void setUTCMinutes(int n) {
-		setField(getUTC(true), Calendar.MINUTE, n);
+		setField(true, MINUTES, n);
 	}
 
 	public void setUTCMonth(int n) {
-		setField(getUTC(true), Calendar.MONTH, n);
+		setField(true, MONTH, n);
 	}
 
 	public void setUTCSeconds(int n) {
-		setField(getUTC(true), Calendar.SECOND, n);
+		setField(true, SECONDS, n);
 	}
 
 	public void setYear(int n) {
-		setField(getUTC(true), Calendar.YEAR, n);
+		setField(true, YEAR, n);
 	}
 
-	public String toDateString() {
-		if (getCalendar(false) != null) {
-			return DateFormat.getDateInstance(DateFormat.FULL, Locale.US).format(calendar.getTime());
+	private String format(DateFormat format, TimeZone tz) {
+		if (time == INVALID) {
+			return null;
 		}
-		return null;
+		format.setTimeZone(tz);
+		return format.format(new java.util.Date(time));
+	}
+
+	public String toDateString() {
+		return format(DateFormat.getDateInstance(DateFormat.FULL, Locale.US), TimeZone.getDefault());
 	}
 
 	public String toGMTString() {
@@ -271,52 +391,34 @@ public class Date {
 	}
 
 	public String toLocaleDateString() {
-		if (getCalendar(false) != null) {
-			return DateFormat.getDateInstance(DateFormat.FULL, Locale.getDefault()).format(calendar.getTime());
-		}
-		return null;
+		return format(DateFormat.getDateInstance(DateFormat.FULL, Locale.getDefault()), TimeZone.getDefault());
 	}
 
 	public String toLocaleTimeString() {
-		if (getCalendar(false) != null) {
-			return DateFormat.getTimeInstance(DateFormat.FULL, Locale.getDefault()).format(calendar.getTime());
-		}
-		return null;
+		return format(DateFormat.getTimeInstance(DateFormat.FULL, Locale.getDefault()), TimeZone.getDefault());
 	}
 
 	public String toLocaleString() {
-		if (getCalendar(false) != null) {
-			return DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.FULL, Locale.getDefault()).format(
-					calendar.getTime());
-		}
-		return null;
+		return format(DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.FULL, Locale.getDefault()),
+				TimeZone.getDefault());
 	}
 
 	@Override
 	public String toString() {
-		if (getCalendar(false) != null) {
-			return DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.FULL, Locale.US).format(
-					calendar.getTime());
-		}
-		return null;
+		return format(DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.FULL, Locale.US),
+				TimeZone.getDefault());
 	}
 
 	public String toTimeString() {
-		if (getCalendar(false) != null) {
-			return DateFormat.getTimeInstance(DateFormat.FULL, Locale.US).format(calendar.getTime());
-		}
-		return null;
+		return format(DateFormat.getTimeInstance(DateFormat.FULL, Locale.US), TimeZone.getDefault());
 	}
 
 	public String toUTCString() {
-		if (getUTC(false) != null) {
-			return DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.FULL, Locale.US).format(utc.getTime());
-		}
-		return null;
+		return format(DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.FULL, Locale.US), GMT);
 	}
 
 	public static double UTC(int year, int month, int day, int hours, int minutes, int seconds, int ms) {
-		return new Date(year, month, day, hours, minutes, seconds, ms).getTime();
+		return compose(year, month, day, hours, minutes, seconds, ms);
 	}
 
 	public double valueOf() {
@@ -15,6 +15,10 @@
  */
 package org.stjs.javascript;
 
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
 import org.stjs.javascript.annotation.GlobalScope;
 import org.stjs.javascript.annotation.Template;
 
@@ -22,24 +26,56 @@ import org.stjs.javascript.annotation.Template;
  * this class offers map and array builders for both client and server side. For the server side, it delegates the
  * execution to an instance of {@link JSCollectionsImplementor}. On the client side, it simply throws an
  * {@link UnsupportedOperationException} like all the client-side bridges.
+ * <p>
+ * The implementor is looked up once, using the {@link ServiceLoader} mechanism: an implementation registered in
+ * <code>META-INF/services/org.stjs.javascript.JSCollectionsImplementor</code> is preferred to the default server
+ * implementation.
  * 
  * @author acraciun
  */
 @GlobalScope
 @SuppressWarnings("unchecked")
 public class JSCollections {
-	private static JSCollectionsImplementor implementor = null;
+	private static final String DEFAULT_IMPLEMENTOR = "org.stjs.server.JSCollectionsServerImplementor";
+
+	/**
+	 * the implementor is resolved when this class is initialized, i.e. at the first use of a builder. The class
+	 * initialization guarantees the safe publication of the field without any lock on the builders.
+	 */
+	private static class ImplementorHolder {
+		private static final JSCollectionsImplementor IMPLEMENTOR = loadImplementor();
+	}
 
-	private static synchronized JSCollectionsImplementor getImplementor() {
-		if (implementor != null) {
-			return implementor;
+	private static JSCollectionsImplementor loadImplementor() {
+		JSCollectionsImplementor defaultImplementor = null;
+		try {
+			Iterator<JSCollectionsImplementor> it = ServiceLoader.load(JSCollectionsImplementor.class).iterator();
+			while (it.hasNext()) {
+				JSCollectionsImplementor implementor = it.next();
+				if (!implementor.getClass().getName().equals(DEFAULT_IMPLEMENTOR)) {
+					return implementor;
+				}
+				defaultImplementor = implementor;
+			}
+		} catch (ServiceConfigurationError e) {
+			// fall back to the default implementation
+		}
+		if (defaultImplementor != null) {
+			return defaultImplementor;
 		}
 		try {
-			// TODO it could be a cleaner way to inject the implementation, but for the moment this should be enough
 			Class<? extends JSCollectionsImplementor> clazz = (Class<? extends JSCollectionsImplementor>) Class
-					.forName("org.stjs.server.JSCollectionsServerImplementor");
-			implementor = clazz.newInstance();
+					.forName(DEFAULT_IMPLEMENTOR);
+			return clazz.newInstance();
 		} catch (Exception e) {
+			// client side: no implementation available
+			return null;
+		}
+	}
+
+	private static JSCollectionsImplementor getImplementor() {
+		JSCollectionsImplementor implementor = ImplementorHolder.IMPLEMENTOR;
+		if (implementor == null) {
 			throw new UnsupportedOperationException();
 		}
 		return implementor;
@@ -55,6 +91,40 @@ public class JSCollections {
 		return getImplementor().$castArray(a);
 	}
 
+	/**
+	 * on the server side, the array stores the values in a <code>double[]</code> if the implementor is a
+	 * {@link JSPrimitiveArrayImplementor}. On the client side it's a plain array.
+	 */
+	@Template("array")
+	public static Array<Double> $doubleArray(double... values) {
+		JSCollectionsImplementor implementor = getImplementor();
+		if (implementor instanceof JSPrimitiveArrayImplementor) {
+			return ((JSPrimitiveArrayImplementor) implementor).$doubleArray(values);
+		}
+		Double[] boxed = new Double[values.length];
+		for (int i = 0; i < values.length; ++i) {
+			boxed[i] = values[i];
+		}
+		return implementor.$array(boxed);
+	}
+
+	/**
+	 * on the server side, the array stores the values in an <code>int[]</code> if the implementor is a
+	 * {@link JSPrimitiveArrayImplementor}. On the client side it's a plain array.
+	 */
+	@Template("array")
+	public static Array<Integer> $intArray(int... values) {
+		JSCollectionsImplementor implementor = getImplementor();
+		if (implementor instanceof JSPrimitiveArrayImplementor) {
+			return ((JSPrimitiveArrayImplementor) implementor).$intArray(values);
+		}
+		Integer[] boxed = new Integer[values.length];
+		for (int i = 0; i < values.length; ++i) {
+			boxed[i] = values[i];
+		}
+		return implementor.$array(boxed);
+	}
+
 	@Template("map")
 	public static <K extends String, V> Map<K, V> $map() {
 		return getImplementor().$map();
@@ -90,7 +160,7 @@ public class JSCollections {
 	@SuppressWarnings({ "rawtypes" })
 	public static <K extends String, V> Map<K, V> $map(K k1, V v1, K k2, V v2, K k3, V v3, K k4, V v4, K k5, V v5,
 			K k6, Object... morePairs) {
-		return (Map) getImplementor().$map(k1, v1, k2, v2, k3, v3, k4, v4, k6, morePairs);
+		return (Map) getImplementor().$map(k1, v1, k2, v2, k3, v3, k4, v4, k5, v5, k6, morePairs);
 	}
 
 }
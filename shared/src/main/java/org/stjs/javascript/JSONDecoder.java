@@ -0,0 +1,52 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.javascript;
+
+import org.stjs.javascript.annotation.Namespace;
+import org.stjs.javascript.functions.Callback1;
+
+/**
+ * this class is the bridge to the incremental JSON decoding of stjs.js. Like stjs.parseJSON, it builds a typed object
+ * hierarchy, but the elements of a top-level array are converted by slices (see decodeArray), letting the browser
+ * handle other events between two slices. The result is passed to the callback when the decoding is complete. On the
+ * server side the methods throw an {@link UnsupportedOperationException} like all the client-side bridges.
+ */
+@Namespace("stjs")
+public class JSONDecoder {
+	/**
+	 * the default number of elements converted in a slice
+	 */
+	public static int sliceSize;
+
+	private JSONDecoder() {
+		//
+	}
+
+	/**
+	 * converts the json like stjs.parseJSON, in a single slice. Use decodeArray for the top-level arrays.
+	 */
+	public static <T> void decode(String json, Class<T> type, Callback1<T> callback) {
+		throw new UnsupportedOperationException();
+	}
+
+	public static <T> void decodeArray(String json, Class<T> elementType, Callback1<Array<T>> callback) {
+		throw new UnsupportedOperationException();
+	}
+
+	public static <T> void decodeArray(String json, Class<T> elementType, Callback1<Array<T>> callback, int sliceSize) {
+		throw new UnsupportedOperationException();
+	}
+}
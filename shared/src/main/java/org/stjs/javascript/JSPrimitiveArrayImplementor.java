@@ -0,0 +1,27 @@
+/**
+ *  Copyright 2011 Alexandru Craciun, Eyal Kaspi
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.stjs.javascript;
+
+/**
+ * This optional interface is implemented by the {@link JSCollectionsImplementor} that can store the numbers of an array
+ * without boxing them. With the other implementors, {@link JSCollections#$doubleArray(double...)} and
+ * {@link JSCollections#$intArray(int...)} build a plain array of boxed numbers with $array.
+ */
+public interface JSPrimitiveArrayImplementor {
+	public Array<Double> $doubleArray(double... values);
+
+	public Array<Integer> $intArray(int... values);
+}
@@ -0,0 +1,198 @@
+package org.stjs.testing.driver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.stjs.testing.driver.browser.Browser;
+import org.stjs.testing.driver.browser.LongPollingBrowser;
+
+import com.google.common.base.Charsets;
+
+/**
+ * A standalone process that starts the browsers once and lends them to the JUnit JVMs of a build (like the JVMs forked
+ * by maven-surefire-plugin), so that each JVM does not pay for starting its own browsers. The farm is configured like
+ * a JUnit session (stjs-test.properties or system properties), and it's started with:<br>
+ * <code>java org.stjs.testing.driver.BrowserFarm [port]</code><br>
+ * The JUnit JVMs borrow the browsers of the farm when the property stjs.test.farm is set to its address (host:port).
+ * The browsers must run on the same machine as the JUnit JVMs, and the farm only accepts the local connections, as
+ * anyone connected to it could send its browsers to any page.<br>
+ * <br>
+ * The protocol is line based. The JVM sends "LEASE browserName startPageUrl". When a browser of that type is idle, the
+ * farm sends it to the start page of the JVM and answers "LEASED farmPageUrl" (or "ERROR message" if it cannot). The
+ * browser is lent until the connection is closed, and the JVM must send it back to farmPageUrl before that.
+ */
+public class BrowserFarm {
+	public static final String LEASE = "LEASE";
+	public static final String LEASED = "LEASED";
+	public static final String ERROR = "ERROR";
+
+	public static final int DEFAULT_PORT = 8056;
+
+	private final Map<Class<?>, BrowserType> browserTypes = new HashMap<Class<?>, BrowserType>();
+	private final AtomicInteger connectionCount = new AtomicInteger(0);
+	private final DriverConfiguration config;
+
+	public BrowserFarm(DriverConfiguration config) {
+		this.config = config;
+		for (Browser browser : config.getBrowsers()) {
+			if (!(browser instanceof LongPollingBrowser)) {
+				System.out.println("Browser " + browser.getClass().getSimpleName() + " cannot be lent by the farm");
+				continue;
+			}
+			BrowserType type = browserTypes.get(browser.getClass());
+			if (type == null) {
+				type = new BrowserType();
+				browserTypes.put(browser.getClass(), type);
+			}
+			type.add((LongPollingBrowser) browser);
+		}
+	}
+
+	/**
+	 * Accepts the connections of the JUnit JVMs running on this machine. This method never returns
+	 */
+	public void serve(int port) throws IOException {
+		ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getByName("localhost"));
+		System.out.println("Browser farm is listening on port " + port);
+		while (true) {
+			final Socket socket = serverSocket.accept();
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					handleConnection(socket);
+				}
+			});
+			t.setName("browserFarm-" + connectionCount.incrementAndGet());
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+	private void handleConnection(Socket socket) {
+		BrowserType type = null;
+		LongPollingBrowser browser = null;
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.UTF_8));
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), Charsets.UTF_8);
+
+			String request = in.readLine();
+			String[] parts = request != null ? request.split(" ", 3) : new String[0];
+			if ((parts.length != 3) || !LEASE.equals(parts[0])) {
+				reply(out, ERROR + " Unknown request: " + request);
+				return;
+			}
+			Class<?> browserClass = DriverConfiguration.getBrowserClass(parts[1]);
+			type = browserClass != null ? browserTypes.get(browserClass) : null;
+			if (type == null) {
+				reply(out, ERROR + " This farm has no " + parts[1] + " browser");
+				return;
+			}
+
+			browser = type.lend(parts[2]);
+			if (browser == null) {
+				reply(out, ERROR + " All the " + parts[1] + " browsers of this farm are dead");
+				return;
+			}
+			reply(out, LEASED + " " + browser.getStartPageUrl());
+
+			// the browser is lent until the JVM closes the connection
+			while (in.readLine() != null) {
+				// nothing else is expected from the JVM
+			}
+		} catch (IOException e) {
+			if (config.isDebugEnabled()) {
+				System.out.println("Connection to the browser farm lost: " + e);
+			}
+		} catch (InterruptedException e) {
+			// the farm is stopping
+		} finally {
+			if (browser != null) {
+				type.giveBack(browser);
+			}
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+	}
+
+	private void reply(Writer out, String response) throws IOException {
+		out.write(response + "\n");
+		out.flush();
+	}
+
+	/**
+	 * The browsers of the same type
+	 */
+	private class BrowserType {
+		private final BlockingQueue<LongPollingBrowser> idleBrowsers = new LinkedBlockingQueue<LongPollingBrowser>();
+		private final AtomicInteger aliveCount = new AtomicInteger(0);
+
+		void add(LongPollingBrowser browser) {
+			aliveCount.incrementAndGet();
+			idleBrowsers.add(browser);
+		}
+
+		void giveBack(LongPollingBrowser browser) {
+			idleBrowsers.add(browser);
+		}
+
+		/**
+		 * Waits for one of the browsers to be idle and sends it to the given page. A browser that does not come back
+		 * to the farm (e.g. the JVM that borrowed it crashed, leaving it on a page that no longer answers) is
+		 * restarted, so that it waits again on the page of the farm. It is only given up if it cannot be restarted.
+		 *
+		 * @return the browser, or null if all the browsers of this type are dead
+		 */
+		LongPollingBrowser lend(String url) throws InterruptedException {
+			while (aliveCount.get() > 0) {
+				LongPollingBrowser browser = idleBrowsers.poll(1, TimeUnit.SECONDS);
+				if (browser == null) {
+					continue;
+				}
+				if (browser.redirect(url)) {
+					return browser;
+				}
+				if (restart(browser)) {
+					idleBrowsers.add(browser);
+				} else {
+					aliveCount.decrementAndGet();
+				}
+			}
+			return null;
+		}
+
+		private boolean restart(LongPollingBrowser browser) {
+			System.out.println("Browser " + browser.getId() + " did not come back to the farm, it's restarted");
+			try {
+				browser.stop();
+				browser.start();
+				return true;
+			} catch (Exception e) {
+				System.out.println("Browser " + browser.getId() + " could not be restarted, it's given up: " + e);
+				return false;
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		DriverConfiguration config = new DriverConfiguration(BrowserFarm.class, false);
+		// the JUnit session without any test starts the browsers and the HTTP server they wait on
+		JUnitSession.getInstance().start(config);
+		new BrowserFarm(config).serve(port);
+	}
+}
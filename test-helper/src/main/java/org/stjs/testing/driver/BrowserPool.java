@@ -0,0 +1,54 @@
+package org.stjs.testing.driver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.stjs.testing.driver.browser.Browser;
+
+/**
+ * Groups the instances of the same type of browser. Each test is executed by only one of the instances: the first one
+ * that is idle. This way, running more instances of a browser makes the test suite run faster, while running different
+ * types of browsers makes each test run in all of them.
+ */
+public class BrowserPool {
+	private final List<Browser> browsers = new ArrayList<Browser>();
+	private final BlockingQueue<Browser> idleBrowsers = new LinkedBlockingQueue<Browser>();
+
+	public void addBrowser(Browser browser) {
+		browsers.add(browser);
+		idleBrowsers.add(browser);
+	}
+
+	public List<Browser> getBrowsers() {
+		return Collections.unmodifiableList(browsers);
+	}
+
+	public int size() {
+		return browsers.size();
+	}
+
+	/**
+	 * Waits for one of the browsers of the pool to be idle and sends it the specified test. The browser goes back to the
+	 * pool as soon as it reported the result of the test. The result is forwarded to the given test method.
+	 */
+	public void executeTest(final MultiTestMethod method) {
+		final Browser browser;
+		try {
+			browser = idleBrowsers.take();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+
+		browser.executeTest(new MultiTestMethod(method.getTestClass(), method.getMethod(), 1) {
+			@Override
+			public void notifyExecutionResult(TestResult result) {
+				// the browser is available again before the test is notified, so the next test can already use it
+				idleBrowsers.add(browser);
+				method.notifyExecutionResult(result);
+			}
+		});
+	}
+}
@@ -18,6 +18,7 @@ package org.stjs.testing.driver;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -28,12 +29,14 @@ import java.util.Properties;
 import org.stjs.testing.driver.browser.Browser;
 import org.stjs.testing.driver.browser.ChromeBrowser;
 import org.stjs.testing.driver.browser.DesktopDefaultBrowser;
+import org.stjs.testing.driver.browser.FarmBrowser;
 import org.stjs.testing.driver.browser.FirefoxBrowser;
 import org.stjs.testing.driver.browser.HeadlessChromeBrowser;
 import org.stjs.testing.driver.browser.HeadlessFirefoxBrowser;
 import org.stjs.testing.driver.browser.PhantomjsBrowser;
 import org.stjs.testing.driver.browser.RemoteBrowser;
 import org.stjs.testing.driver.browser.RhinoBrowser;
+import org.stjs.testing.driver.browser.RhinoEngineBrowser;
 
 import com.google.common.io.Closeables;
 
@@ -54,6 +57,10 @@ public class DriverConfiguration {
 	private static final String PROP_BROWSERS = "stjs.test.browsers";
 	private static final String PROP_TEST_TIMEOUT = "stjs.test.testTimeout";
 	private static final String PROP_DEBUG = "stjs.test.debug";
+	private static final String PROP_BATCH = "stjs.test.batch";
+	private static final String PROP_FARM = "stjs.test.farm";
+	private static final String PROP_TIMINGS = "stjs.test.timings";
+	private static final String PROP_SLOWEST_TESTS = "stjs.test.slowestTests";
 
 	private int port = 8055;
 	private int waitForBrowser = 10;
@@ -61,6 +68,10 @@ public class DriverConfiguration {
 	private boolean startBrowser = true;
 	private int testTimeout = 2;
 	private boolean debugEnabled = false;
+	private boolean batchEnabled = false;
+	private InetSocketAddress farmAddress;
+	private boolean timingsEnabled = true;
+	private int slowestTestCount = 10;
 	private List<Browser> browsers;
 
 	private final ClassLoader classLoader;
@@ -68,6 +79,14 @@ public class DriverConfiguration {
 	private Properties props;
 
 	public DriverConfiguration(Class<?> klass) {
+		this(klass, true);
+	}
+
+	/**
+	 * @param farmClient
+	 *            false for the configuration of the BrowserFarm itself, that always starts its own browsers
+	 */
+	DriverConfiguration(Class<?> klass, boolean farmClient) {
 
 		InputStream in = null;
 		props = new Properties();
@@ -106,6 +125,22 @@ public class DriverConfiguration {
 		if (props.get(PROP_DEBUG) != null) {
 			debugEnabled = Boolean.parseBoolean(props.getProperty(PROP_DEBUG));
 		}
+		if (props.get(PROP_BATCH) != null) {
+			batchEnabled = Boolean.parseBoolean(props.getProperty(PROP_BATCH));
+		}
+		if (props.get(PROP_TIMINGS) != null) {
+			timingsEnabled = Boolean.parseBoolean(props.getProperty(PROP_TIMINGS));
+		}
+		if (props.get(PROP_SLOWEST_TESTS) != null) {
+			slowestTestCount = Integer.parseInt(props.getProperty(PROP_SLOWEST_TESTS));
+		}
+		if (farmClient && (props.get(PROP_FARM) != null)) {
+			farmAddress = parseAddress(props.getProperty(PROP_FARM));
+			if (props.get(PROP_PORT) == null) {
+				// several JVMs share the farm, each one needs its own port
+				port = 0;
+			}
+		}
 		classLoader = new WebAppClassLoader(new URL[] {}, klass.getClassLoader(), debugEnabled);
 
 		// load browsers last
@@ -120,16 +155,40 @@ public class DriverConfiguration {
 		return location;
 	}
 
+	/**
+	 * parses host:port, or only port for localhost
+	 */
+	private static InetSocketAddress parseAddress(String address) {
+		int colon = address.lastIndexOf(':');
+		if (colon < 0) {
+			return new InetSocketAddress("localhost", Integer.parseInt(address.trim()));
+		}
+		return new InetSocketAddress(address.substring(0, colon).trim(), Integer.parseInt(address.substring(colon + 1)
+				.trim()));
+	}
+
 	private List<Browser> instantiateBrowsers() {
 		if (props.getProperty(PROP_BROWSERS) == null) {
-			return Arrays.asList(new Browser[] { new DesktopDefaultBrowser(this) });
+			Browser browser = farmAddress != null ? new FarmBrowser(this, BrowserBuilder.DESKTOP_DEFAULT.name)
+					: new DesktopDefaultBrowser(this);
+			return Arrays.asList(new Browser[] { browser });
 		}
 		String[] browserNames = props.getProperty(PROP_BROWSERS).split(",");
 		browsers = new ArrayList<Browser>(browserNames.length);
 		for (String browserName : browserNames) {
-			Browser browser = BrowserBuilder.build(browserName.trim(), this);
-			if (browser != null) {
-				browsers.add(browser);
+			// name*count starts count instances of the same browser. Each test is executed by only one of them
+			String name = browserName.trim();
+			int instances = 1;
+			int star = name.indexOf('*');
+			if (star >= 0) {
+				instances = Integer.parseInt(name.substring(star + 1).trim());
+				name = name.substring(0, star).trim();
+			}
+			for (int i = 0; i < instances; ++i) {
+				Browser browser = farmAddress != null ? BrowserBuilder.lease(name, this) : BrowserBuilder.build(name, this);
+				if (browser != null) {
+					browsers.add(browser);
+				}
 			}
 		}
 		return browsers;
@@ -191,6 +250,57 @@ public class DriverConfiguration {
 		this.debugEnabled = debugEnabled;
 	}
 
+	/**
+	 * @return true if all the test methods of a class are executed in the same page (unless the class is annotated
+	 *         with IsolatedTests)
+	 */
+	public boolean isBatchEnabled() {
+		return batchEnabled;
+	}
+
+	public void setBatchEnabled(boolean batchEnabled) {
+		this.batchEnabled = batchEnabled;
+	}
+
+	/**
+	 * @return true if the timings of the tests are reported at the end of the session (see TestTimingReport)
+	 */
+	public boolean isTimingsEnabled() {
+		return timingsEnabled;
+	}
+
+	public void setTimingsEnabled(boolean timingsEnabled) {
+		this.timingsEnabled = timingsEnabled;
+	}
+
+	/**
+	 * @return the number of slowest tests printed at the end of the session
+	 */
+	public int getSlowestTestCount() {
+		return slowestTestCount;
+	}
+
+	public void setSlowestTestCount(int slowestTestCount) {
+		this.slowestTestCount = slowestTestCount;
+	}
+
+	/**
+	 * @return the address of the BrowserFarm that lends its browsers to this JVM, or null if this JVM starts its own
+	 *         browsers
+	 */
+	public InetSocketAddress getFarmAddress() {
+		return farmAddress;
+	}
+
+	/**
+	 * @return the type of browser that has the given name in the stjs.test.browsers property, or null if the name is
+	 *         unknown
+	 */
+	static Class<? extends Browser> getBrowserClass(String browserName) {
+		BrowserBuilder builder = BrowserBuilder.forName(browserName);
+		return builder != null ? builder.clazz : null;
+	}
+
 	public ClassLoader getClassLoader() {
 		return classLoader;
 	}
@@ -219,7 +329,8 @@ public class DriverConfiguration {
 		HEADLESS_FIREFOX("headlessFirefox", HeadlessFirefoxBrowser.class), //
 		HEADLESS_CHROME("headlessChrome", HeadlessChromeBrowser.class), //
 		REMOTE("remote", RemoteBrowser.class), //
-		RHINO("rhino", RhinoBrowser.class);
+		RHINO("rhino", RhinoBrowser.class), //
+		RHINO_ENGINE("rhinoEngine", RhinoEngineBrowser.class);
 
 		String name;
 		Class<? extends Browser> clazz;
@@ -244,6 +355,17 @@ public class DriverConfiguration {
 			return null;
 		}
 
+		/**
+		 * the browser is not started by this JVM, but borrowed from the BrowserFarm
+		 */
+		static Browser lease(String browserName, DriverConfiguration config) {
+			if (forName(browserName) == null) {
+				System.out.println("Unable to create browser \"" + browserName + "\": Unknown browser name");
+				return null;
+			}
+			return new FarmBrowser(config, browserName);
+		}
+
 		static BrowserBuilder forName(String name) {
 			for (BrowserBuilder builder : BrowserBuilder.values()) {
 				if (builder.name.equals(name)) {
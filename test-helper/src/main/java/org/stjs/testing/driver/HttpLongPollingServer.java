@@ -1,9 +1,11 @@
 package org.stjs.testing.driver;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.text.DateFormat;
@@ -13,10 +15,13 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.runners.model.InitializationError;
 import org.stjs.testing.driver.browser.LongPollingBrowser;
@@ -40,13 +45,22 @@ public class HttpLongPollingServer implements AsyncProcess {
 	private final DriverConfiguration config;
 	private final HttpServer httpServer;
 	private final Map<Long, LongPollingBrowser> browsers = new ConcurrentHashMap<Long, LongPollingBrowser>();
+	private final AtomicLong nextBrowserId = new AtomicLong(0);
 	private final Map<Long, Long> selfAssignedBrowserIds = new ConcurrentHashMap<Long, Long>();
+	private final ResourceCache resourceCache;
+	/**
+	 * the fixtures of the test classes, shared by all the browsers of the session
+	 */
+	private final Map<Class<?>, LongPollingBrowser.TestClassFixture> testClassFixtures =
+			new ConcurrentHashMap<Class<?>, LongPollingBrowser.TestClassFixture>();
+	private final ExecutorService executor;
 
 	/**
 	 * Configures and starts the HTTP server
 	 */
 	public HttpLongPollingServer(DriverConfiguration config) throws InitializationError {
 		this.config = config;
+		this.resourceCache = new ResourceCache(config.getClassLoader());
 		// create the HttpServer
 		InetSocketAddress address = new InetSocketAddress(config.getPort());
 		try {
@@ -54,22 +68,25 @@ public class HttpLongPollingServer implements AsyncProcess {
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		// with port 0 (useful when several JVMs run tests at the same time), the port is chosen by the system
+		config.setPort(httpServer.getAddress().getPort());
 
-		// by default, the HttpServer uses a single thread to respond to all requests given that we block responses
-		// to tests requests while waiting for new tests, and that the new tests are only sent when all browsers have
-		// responded, one thread is not enough to handle multiple browsers.
-		// Let's give him an executor that is a bit more flexible
-		httpServer.setExecutor(Executors.newFixedThreadPool(config.getBrowserCount() * 2, new ThreadFactory() {
-			private AtomicInteger i = new AtomicInteger(0);
-
-			@Override
-			public Thread newThread(Runnable r) {
-				Thread t = new Thread(r);
-				t.setName("httpServer-" + i.incrementAndGet());
-				t.setDaemon(true);
-				return t;
-			}
-		}));
+		// by default, the HttpServer uses a single thread to respond to all requests. The long poll requests of the
+		// browsers waiting for a new test do not hold any thread (they are parked until the test comes), so a small
+		// pool is enough to load the scripts of the test pages in parallel, whatever the number of browsers
+		executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+				new ThreadFactory() {
+					private AtomicInteger i = new AtomicInteger(0);
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r);
+						t.setName("httpServer-" + i.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		httpServer.setExecutor(executor);
 
 		// create and register our handler
 		httpServer.createContext("/", new AsyncHttpHandler());
@@ -90,14 +107,22 @@ public class HttpLongPollingServer implements AsyncProcess {
 	/**
 	 * Registers the specified browser session with this HTTP server, so that this server knows how to respond to HTTP
 	 * requests containing the specified session's id. This method is expected to be called many times in a row before
-	 * any unit test is started, once per browser session.
+	 * any unit test is started, once per browser session, possibly from several threads at once.
 	 */
 	public long registerBrowserSession(LongPollingBrowser browser) {
-		long id = browsers.size();
+		long id = nextBrowserId.getAndIncrement();
 		browsers.put(id, browser);
 		return id;
 	}
 
+	/**
+	 * @return the fixtures of the test classes already built by the browsers. They depend on the configuration of the
+	 *         session, so they are dropped with this server at the end of the session.
+	 */
+	public Map<Class<?>, LongPollingBrowser.TestClassFixture> getTestClassFixtures() {
+		return testClassFixtures;
+	}
+
 	private final class AsyncHttpHandler implements HttpHandler {
 		@Override
 		public void handle(HttpExchange exchange) throws IOException {
@@ -105,6 +130,7 @@ public class HttpLongPollingServer implements AsyncProcess {
 				System.out.println(exchange.getRequestMethod() + ": " + exchange.getRequestURI());
 			}
 
+			boolean parked = false;
 			try {
 
 				// add some common response headers
@@ -117,7 +143,7 @@ public class HttpLongPollingServer implements AsyncProcess {
 				Map<String, String> params = parseQueryString(exchange.getRequestURI().getRawQuery());
 				String path = exchange.getRequestURI().getPath();
 				if (NEXT_TEST_URI.equals(path)) {
-					handleNextTest(params, exchange);
+					parked = handleNextTest(params, exchange);
 				} else if (BLANK_URI.equals(path)) {
 					handleAboutBlank(exchange);
 				} else {
@@ -127,7 +153,9 @@ public class HttpLongPollingServer implements AsyncProcess {
 				System.err.println("Error processing request:" + ex);
 				ex.printStackTrace();
 			} finally {
-				exchange.close();
+				if (!parked) {
+					exchange.close();
+				}
 			}
 		}
 
@@ -139,24 +167,31 @@ public class HttpLongPollingServer implements AsyncProcess {
 		}
 
 		/**
-		 * Called when this HTTP server receives a request for the next test from a browser. This method blocks until
-		 * one of these to conditions are met:<br>
+		 * Called when this HTTP server receives a request for the next test from a browser. This method does not block:
+		 * the request is parked in the browser session until one of these to conditions are met:<br>
 		 * <ol>
-		 * <li>This server receives a new test to send to the browser session that made the request (via the
-		 * queueTest()) method.
-		 * <li>This server is notified that no more tests are remaining (via AsyncBrowserSession.notifyNoMoreTest())
+		 * <li>The browser session receives a new test to send to the browser (via the executeTest()) method.
+		 * <li>The browser session is notified that no more tests are remaining (via notifyNoMoreTests())
 		 * </ol>
-		 * Once one of these events has happened, this HTTP server sends the appropriate HTML/javascript response before
-		 * returning from this method.
+		 * Once one of these events has happened, the HTTP server sends the appropriate HTML/javascript response from
+		 * one of the threads of its executor and closes the exchange.
+		 * 
+		 * @return true if the request was parked, in which case the exchange must not be closed by the caller
 		 */
-		private void handleNextTest(Map<String, String> params, HttpExchange exchange) {
+		private boolean handleNextTest(final Map<String, String> params, final HttpExchange exchange) {
 			// Read the test results returned by the browser, if any
 			long browserId = parseLong(params.get("browserId"), -1);
 			LongPollingBrowser browser = browsers.get(browserId);
 			if (browser == null) {
 				browser = selfAssignedBrowser(browserId);
 			}
-			MultiTestMethod completedMethod = browser.getMethodUnderExecution();
+			// the browser loads a new page for a test it already picked up, after the result of the previous test was
+			// sent in batch mode
+			boolean pending = "true".equals(params.get("pending"));
+			// the page of a test whose batch request failed asks for the next test without the result, that may have
+			// been reported already
+			boolean withResult = params.containsKey("result");
+			MultiTestMethod completedMethod = pending || !withResult ? null : browser.getMethodUnderExecution();
 			if (completedMethod != null) {
 				// We only have a method under execution, if the HTTP request that is being
 				// handled is not the first one the server has received
@@ -169,18 +204,105 @@ public class HttpLongPollingServer implements AsyncProcess {
 				// the MultiTestMethod, the JUnit thread will become unblocked and the test result
 				// will be reported
 				TestResult result = browser.buildResult(params, exchange);
+				result.setTiming(browser.completeTiming(params));
 				completedMethod.notifyExecutionResult(result);
-			} else {
-				if (config.isDebugEnabled()) {
+			} else if (!pending && config.isDebugEnabled()) {
+				if (withResult) {
 					System.out.println("Server received request for the first test from browser " + browserId);
+				} else {
+					System.out.println("Server received request for the next test without result from browser "
+							+ browserId);
 				}
 			}
 
-			// Wait for the JUnit thread to send us the next test. We block this thread
-			// until we have a new test to send to the browser or the server is shutdown,
-			// whichever comes first. Basically, we are not sending the HTTP response to the
+			if (pending) {
+				sendNextTest(browser, browser.getMethodUnderExecution(), params, exchange);
+				return false;
+			}
+
+			// Wait for the JUnit thread to send us the next test. We don't block this thread: the request is parked
+			// until we have a new test to send to the browser. Basically, we are not sending the HTTP response to the
 			// browser until we have received a new test
-			MultiTestMethod nextMethod = browser.awaitNextTest();
+			final LongPollingBrowser pollingBrowser = browser;
+			browser.awaitNextTest(new LongPollingBrowser.NextTestListener() {
+				@Override
+				public void nextTest(final MultiTestMethod nextMethod) {
+					respondLater(exchange, new Callable<Void>() {
+						@Override
+						public Void call() throws Exception {
+							sendNextTest(pollingBrowser, nextMethod, params, exchange);
+							return null;
+						}
+					});
+				}
+
+				@Override
+				public void redirect(final String url) {
+					respondLater(exchange, new Callable<Void>() {
+						@Override
+						public Void call() throws Exception {
+							pollingBrowser.sendRedirectFixture(url, exchange);
+							return null;
+						}
+					});
+				}
+
+				@Override
+				public void cancel() {
+					exchange.close();
+				}
+			});
+			return true;
+		}
+
+		/**
+		 * Sends the response of a parked request from one of the threads of the executor. The listeners of the parked
+		 * requests are called from the JUnit thread, which must not wait for the browser.
+		 */
+		private void respondLater(final HttpExchange exchange, final Callable<Void> response) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						response.call();
+					} catch (Exception ex) {
+						System.err.println("Error processing request:" + ex);
+						ex.printStackTrace();
+					} finally {
+						exchange.close();
+					}
+				}
+			});
+		}
+
+		/**
+		 * Sends to the browser the response to its request for the next test. In batch mode, the request comes from the
+		 * page of the previous test and the response is either the next test of the same class or the order to load a
+		 * new page.
+		 */
+		private void sendNextTest(LongPollingBrowser browser, MultiTestMethod nextMethod, Map<String, String> params,
+				HttpExchange exchange) {
+			long browserId = browser.getId();
+
+			// in batch mode, the page of the previous test asks for the next one. It can run it only if the test is
+			// from the same class
+			String batchClassName = params.get("batch");
+			if (batchClassName != null) {
+				try {
+					if ((nextMethod != null) && browser.canExecuteInSamePage(nextMethod, batchClassName)) {
+						browser.sendBatchedTest(nextMethod, exchange);
+					} else {
+						browser.sendReloadFixture(exchange);
+					}
+				} catch (IOException ioe) {
+					if (nextMethod != null) {
+						browser.markAsDead(ioe, exchange.getRequestHeaders().getFirst("User-Agent"));
+					}
+					throw new RuntimeException(ioe);
+				}
+				return;
+			}
+
 			if (nextMethod != null) {
 				if (config.isDebugEnabled()) {
 					System.out.println("Server is sending test for method " + nextMethod.toString() + " to browser "
@@ -228,8 +350,7 @@ public class HttpLongPollingServer implements AsyncProcess {
 			throw new RuntimeException("More browser connections than configured browsers");
 		}
 
-		private synchronized void handleResource(String path, HttpExchange exchange) throws IOException,
-				URISyntaxException {
+		private void handleResource(String path, HttpExchange exchange) throws IOException, URISyntaxException {
 			if (path.endsWith(".js")) {
 				exchange.getResponseHeaders().add("Content-Type", "text/javascript");
 			} else if (path.endsWith(".html")) {
@@ -237,9 +358,37 @@ public class HttpLongPollingServer implements AsyncProcess {
 			}
 			// XXX: legacy fix
 			String cleanPath = path.replaceFirst("file:/+target", "target");
-			if (!StreamUtils.copy(config.getClassLoader(), cleanPath, exchange)) {
+			String resourcePath = new URI(cleanPath).getPath();
+			if (resourcePath == null) {
+				throw new IllegalArgumentException("Wrong path in uri:" + cleanPath);
+			}
+
+			ResourceCache.Resource resource = resourceCache.get(resourcePath.substring(1));
+			if (resource == null) {
+				exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
 				System.err.println(cleanPath + " was not found in classpath");
+				return;
+			}
+
+			// the browser must check each time if its copy is still valid, as the generated files may change
+			exchange.getResponseHeaders().add("ETag", resource.getETag());
+			exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+			if (resource.getETag().equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+				return;
+			}
+
+			byte[] content = resource.getContent();
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (resource.isGzipWorthy() && (acceptEncoding != null) && acceptEncoding.contains("gzip")) {
+				exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				exchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+				content = resource.getGzippedContent();
 			}
+			exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, content.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(content);
+			out.flush();
 		}
 
 		private Map<String, String> parseQueryString(String query) {
@@ -283,5 +432,6 @@ public class HttpLongPollingServer implements AsyncProcess {
 	@Override
 	public void stop() {
 		this.httpServer.stop(5);
+		this.executor.shutdown();
 	}
 }
@@ -6,13 +6,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
 import org.stjs.testing.driver.browser.Browser;
+import org.stjs.testing.driver.browser.FarmBrowser;
 
 /**
  * Represents one session of unit testing that may span multiple tests in multiple classes, and performs startup and
@@ -34,6 +37,8 @@ public class JUnitSession {
 	private volatile boolean initFailed = false;
 
 	private List<Browser> browsers;
+	private List<BrowserPool> browserPools;
+	private final TestTimingReport timingReport = new TestTimingReport();
 	private HashMap<Class<? extends AsyncProcess>, AsyncProcess> sharedDependencies = new HashMap<Class<? extends AsyncProcess>, AsyncProcess>();
 
 	public static JUnitSession getInstance() {
@@ -62,8 +67,24 @@ public class JUnitSession {
 			throw new InitializationError("Session initialization failed previously. Not trying again.");
 		}
 
+		DriverConfiguration sessionConfig;
 		try {
-			config = new DriverConfiguration(testClassSample);
+			sessionConfig = new DriverConfiguration(testClassSample);
+		} catch (Throwable e) {
+			printStackTrace(e);
+			this.initFailed = true;
+			throw new InitializationError(e);
+		}
+		start(sessionConfig);
+	}
+
+	/**
+	 * Starts all the browser and server sessions with the given configuration. This is called directly by the
+	 * BrowserFarm, that has no test class.
+	 */
+	void start(DriverConfiguration sessionConfig) throws InitializationError {
+		try {
+			config = sessionConfig;
 
 			addShutdownHook();
 
@@ -98,6 +119,20 @@ public class JUnitSession {
 
 	private void initBrowsers() {
 		browsers = new ArrayList<Browser>(config.getBrowsers());
+
+		// the instances of the same browser share the tests
+		Map<Object, BrowserPool> pools = new LinkedHashMap<Object, BrowserPool>();
+		for (Browser browser : browsers) {
+			// the browsers borrowed from the farm are all FarmBrowsers, whatever their real type
+			Object type = browser instanceof FarmBrowser ? ((FarmBrowser) browser).getBrowserName() : browser.getClass();
+			BrowserPool pool = pools.get(type);
+			if (pool == null) {
+				pool = new BrowserPool();
+				pools.put(type, pool);
+			}
+			pool.addBrowser(browser);
+		}
+		browserPools = new ArrayList<BrowserPool>(pools.values());
 	}
 
 	private void initBrowserDependencies() throws InitializationError {
@@ -184,6 +219,9 @@ public class JUnitSession {
 	 * adverse effect.
 	 */
 	private void reset() {
+		if ((config != null) && config.isTimingsEnabled()) {
+			reportTimings();
+		}
 		config = null;
 
 		for (Browser browser : browsers) {
@@ -195,6 +233,7 @@ public class JUnitSession {
 			}
 		}
 		browsers.clear();
+		browserPools.clear();
 
 		for (AsyncProcess dep : sharedDependencies.values()) {
 			try {
@@ -206,6 +245,19 @@ public class JUnitSession {
 		sharedDependencies.clear();
 	}
 
+	private void reportTimings() {
+		if (timingReport.isEmpty()) {
+			return;
+		}
+		try {
+			timingReport.print(config.getSlowestTestCount(), System.out);
+			timingReport.write();
+		} catch (Throwable e) {
+			printStackTrace(e);
+		}
+		timingReport.clear();
+	}
+
 	/**
 	 * Called when a runner has been instantiated. This method is expected to be called many times in a row right after
 	 * the session has started, once per STJSTestDriverRunner. The first time this method is called, the HTTP
@@ -238,6 +290,12 @@ public class JUnitSession {
 		if (config.isDebugEnabled()) {
 			System.out.println("test " + method.getMethod() + " is completed");
 		}
+		for (int i = 0; i < result.size(); ++i) {
+			TestTiming timing = result.getResult(i).getTiming();
+			if (timing != null) {
+				timingReport.add(result.getTestClassName(), result.getTestMethodName(), timing);
+			}
+		}
 	}
 
 	/**
@@ -257,6 +315,24 @@ public class JUnitSession {
 		return this.browsers;
 	}
 
+	/**
+	 * Returns the pools of browsers. Each test must be sent to every pool.
+	 */
+	public List<BrowserPool> getBrowserPools() {
+		return this.browserPools;
+	}
+
+	/**
+	 * Returns the number of tests that can be executed at the same time, i.e. the size of the largest browser pool.
+	 */
+	public int getParallelTestCount() {
+		int count = 1;
+		for (BrowserPool pool : browserPools) {
+			count = Math.max(count, pool.size());
+		}
+		return count;
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> T getDependency(Class<T> depencencyType) {
 		return (T) this.sharedDependencies.get(depencencyType);
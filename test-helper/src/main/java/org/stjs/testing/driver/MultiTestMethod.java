@@ -9,8 +9,9 @@ import org.junit.runners.model.TestClass;
 /**
  * Coordinates the execution of one unit test across several browsers. The JUnit runner creates one instance of this
  * class for each unit test, specifying how many browsers are expected to execute this test. The JUnit runner then sends
- * this test to all browsers and waits for all browsers to return the execution results by calling
- * awaitExecutionresult(). When a browser has finished executing a test, notifiyExecutionResult() is called.
+ * this test to all the browser pools, where it is executed by one of the instances of each pool, and waits for all
+ * browsers to return the execution results by calling awaitExecutionresult(). When a browser has finished executing a
+ * test, notifiyExecutionResult() is called.
  * 
  * @author lordofthepigs
  */
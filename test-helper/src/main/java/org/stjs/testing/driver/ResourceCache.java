@@ -0,0 +1,122 @@
+package org.stjs.testing.driver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+/**
+ * Keeps in memory the content of the class path resources served to the browsers, together with their length and their
+ * ETag, so that each resource is read only once per session. The resources coming from files (like the generated
+ * Javascript) are read again if the file is modified. This class is thread-safe.
+ */
+public class ResourceCache {
+	/**
+	 * the smaller resources are not worth compressing
+	 */
+	private static final int MIN_GZIP_SIZE = 1024;
+
+	private final ClassLoader classLoader;
+	private final ConcurrentMap<String, Resource> resources = new ConcurrentHashMap<String, Resource>();
+
+	public ResourceCache(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * @return the resource with the given path in the class path, or null if it doesn't exist
+	 */
+	public Resource get(String path) throws IOException {
+		Resource resource = resources.get(path);
+		if ((resource != null) && !resource.isModified()) {
+			return resource;
+		}
+
+		URL url = classLoader.getResource(path);
+		if (url == null) {
+			return null;
+		}
+		resource = new Resource(url);
+		// if two threads load the same resource at the same time, the last one wins. Both copies are identical
+		resources.put(path, resource);
+		return resource;
+	}
+
+	public static class Resource {
+		private final byte[] content;
+		private final String etag;
+		private final File file;
+		private final long lastModified;
+		private volatile byte[] gzippedContent;
+
+		Resource(URL url) throws IOException {
+			this.file = toFile(url);
+			this.lastModified = file != null ? file.lastModified() : 0;
+
+			InputStream in = url.openStream();
+			try {
+				content = ByteStreams.toByteArray(in);
+			} finally {
+				Closeables.closeQuietly(in);
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(content.length) + "\"";
+		}
+
+		private static File toFile(URL url) {
+			if (!"file".equals(url.getProtocol())) {
+				return null;
+			}
+			try {
+				return new File(url.toURI());
+			} catch (URISyntaxException e) {
+				return null;
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+
+		boolean isModified() {
+			return (file != null) && (file.lastModified() != lastModified);
+		}
+
+		public byte[] getContent() {
+			return content;
+		}
+
+		public String getETag() {
+			return etag;
+		}
+
+		public boolean isGzipWorthy() {
+			return content.length >= MIN_GZIP_SIZE;
+		}
+
+		/**
+		 * @return the compressed content. It is built the first time it's needed
+		 */
+		public byte[] getGzippedContent() throws IOException {
+			byte[] gzipped = gzippedContent;
+			if (gzipped == null) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 3);
+				GZIPOutputStream out = new GZIPOutputStream(bytes);
+				out.write(content);
+				out.close();
+				gzipped = bytes.toByteArray();
+				gzippedContent = gzipped;
+			}
+			return gzipped;
+		}
+	}
+}
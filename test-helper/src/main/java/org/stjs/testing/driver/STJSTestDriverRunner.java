@@ -17,15 +17,18 @@ package org.stjs.testing.driver;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
 import org.junit.runners.model.Statement;
 import org.stjs.generator.GeneratorConstants;
 import org.stjs.javascript.annotation.STJSBridge;
-import org.stjs.testing.driver.browser.Browser;
 
 /**
  * add the STJSBridge annotation only to allow it to be present in the junit annotation
@@ -39,6 +42,11 @@ public class STJSTestDriverRunner extends BlockJUnit4ClassRunner {
 	public STJSTestDriverRunner(Class<?> klass) throws InitializationError, IOException {
 		super(klass);
 		JUnitSession.getInstance().runnerInstantiated(this);
+
+		int parallelTests = JUnitSession.getInstance().getParallelTestCount();
+		if (parallelTests > 1) {
+			setScheduler(new ParallelScheduler(parallelTests));
+		}
 	}
 
 	@Override
@@ -59,11 +67,10 @@ public class STJSTestDriverRunner extends BlockJUnit4ClassRunner {
 					System.out.println("Executing Statement for " + method.getMethod().toString());
 				}
 
-				MultiTestMethod aMethod = new MultiTestMethod(getTestClass(), method, session.getConfig()
-						.getBrowserCount());
+				MultiTestMethod aMethod = new MultiTestMethod(getTestClass(), method, session.getBrowserPools().size());
 
-				for (Browser browser : session.getBrowsers()) {
-					browser.executeTest(aMethod);
+				for (BrowserPool pool : session.getBrowserPools()) {
+					pool.executeTest(aMethod);
 				}
 
 				TestResultCollection results = aMethod.awaitExecutionResult();
@@ -76,4 +83,30 @@ public class STJSTestDriverRunner extends BlockJUnit4ClassRunner {
 			}
 		};
 	}
+
+	/**
+	 * runs the tests of a class in parallel, when there are several instances of the same browser to execute them
+	 */
+	private static class ParallelScheduler implements RunnerScheduler {
+		private final ExecutorService executor;
+
+		public ParallelScheduler(int threads) {
+			executor = Executors.newFixedThreadPool(threads);
+		}
+
+		@Override
+		public void schedule(Runnable childStatement) {
+			executor.execute(childStatement);
+		}
+
+		@Override
+		public void finished() {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
 }
@@ -18,18 +18,13 @@ package org.stjs.testing.driver;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
-import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 
-import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
-import com.google.common.io.Closeables;
-import com.sun.net.httpserver.HttpExchange;
 
 /**
  * 
@@ -37,7 +32,6 @@ import com.sun.net.httpserver.HttpExchange;
  * 
  * @author acraciun
  */
-@SuppressWarnings("restriction")
 public class StreamUtils {
 	private StreamUtils() {// static methods only
 	}
@@ -62,45 +56,4 @@ public class StreamUtils {
 		}
 		return true;
 	}
-
-	private static long getResourceSize(ClassLoader classLoader, String path) throws IOException {
-		final InputStream is = classLoader.getResourceAsStream(path);
-		try {
-			// TODO improve this
-			long n = 0;
-			while (is.read() >= 0) {
-				n++;
-			}
-			return n;
-		} finally {
-			Closeables.closeQuietly(is);
-		}
-	}
-
-	public static boolean copy(ClassLoader classLoader, String url, HttpExchange exchange) throws IOException,
-			URISyntaxException {
-		URI uri = new URI(url);
-
-		if (uri.getPath() == null) {
-			throw new IllegalArgumentException("Wrong path in uri:" + url);
-		}
-
-		InputStream is = classLoader.getResourceAsStream(uri.getPath().substring(1));
-		if (is == null) {
-			exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, 0);
-			return false;
-		}
-		try {
-			exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK,
-					getResourceSize(classLoader, uri.getPath().substring(1)));
-			OutputStream out = exchange.getResponseBody();
-			ByteStreams.copy(is, out);
-			out.flush();
-		} finally {
-			is.close();
-		}
-
-		// TODO handle remote urls too
-		return true;
-	}
 }
@@ -22,6 +22,7 @@ public class TestResult {
 	private final String location;
 	private final String userAgent;
 	private final boolean isAssert;
+	private TestTiming timing;
 
 	public TestResult(String userAgent, String message, String location, boolean isAssert) {
 		this.userAgent = userAgent;
@@ -38,6 +39,17 @@ public class TestResult {
 		return userAgent;
 	}
 
+	/**
+	 * @return the times measured during the execution of the test, or null if they are not known
+	 */
+	public TestTiming getTiming() {
+		return timing;
+	}
+
+	public void setTiming(TestTiming timing) {
+		this.timing = timing;
+	}
+
 	public boolean isOk() {
 		return "OK".equals(message);
 	}
@@ -0,0 +1,90 @@
+package org.stjs.testing.driver;
+
+/**
+ * The times measured during the execution of one test by one browser. The server side times are timestamps, while the
+ * times measured by the browser itself are durations, as the clock of the browser may differ from the one of the
+ * server.
+ */
+public class TestTiming {
+	private final String browser;
+	private final long dispatchedAt;
+	private volatile long sentAt;
+	private volatile long receivedAt;
+	private volatile long pageLoadMillis = -1;
+	private volatile long runMillis = -1;
+
+	/**
+	 * @param browser
+	 *            the browser instance executing the test
+	 */
+	public TestTiming(String browser) {
+		this.browser = browser;
+		this.dispatchedAt = System.currentTimeMillis();
+		this.sentAt = dispatchedAt;
+	}
+
+	/**
+	 * called when the test (full page or batched test) is sent to the browser
+	 */
+	public void markSent() {
+		sentAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * called when the result of the test is received
+	 */
+	public void markReceived() {
+		receivedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * @param pageLoadMillis
+	 *            the time between the reception of the page and the start of the test, as measured by the browser (0 if
+	 *            the test ran in a page that was already loaded)
+	 * @param runMillis
+	 *            the time spent in the test method, including the Before and After methods
+	 */
+	public void setBrowserTimes(long pageLoadMillis, long runMillis) {
+		this.pageLoadMillis = pageLoadMillis;
+		this.runMillis = runMillis;
+	}
+
+	public String getBrowser() {
+		return browser;
+	}
+
+	/**
+	 * @return the time between the dispatch of the test to this browser and the moment it was sent to it, i.e. mostly
+	 *         the time the server waited for the browser to ask for a test
+	 */
+	public long getWaitMillis() {
+		return sentAt - dispatchedAt;
+	}
+
+	/**
+	 * @return -1 if the browser did not measure it
+	 */
+	public long getPageLoadMillis() {
+		return pageLoadMillis;
+	}
+
+	/**
+	 * @return -1 if the browser did not measure it
+	 */
+	public long getRunMillis() {
+		return runMillis;
+	}
+
+	/**
+	 * @return the time between the dispatch of the test to this browser and the reception of its result
+	 */
+	public long getTotalMillis() {
+		return (receivedAt != 0 ? receivedAt : System.currentTimeMillis()) - dispatchedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "TestTiming [browser=" + browser + ", wait=" + getWaitMillis() + ", pageLoad=" + pageLoadMillis
+				+ ", run=" + runMillis + ", total=" + getTotalMillis() + "]";
+	}
+}
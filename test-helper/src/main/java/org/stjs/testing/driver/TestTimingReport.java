@@ -0,0 +1,157 @@
+package org.stjs.testing.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Collects the timings of all the tests executed by all the browsers during a JUnit session. At the end of the session,
+ * the slowest tests and a summary per browser are printed, and all the timings are written in CSV and JSON files, to
+ * find the tests that slow down the build. This class is thread-safe.
+ */
+public class TestTimingReport {
+	public static final File TIMINGS_DIRECTORY = new File("target", "stjs-test-timings");
+
+	private final List<Entry> entries = new ArrayList<Entry>();
+
+	public synchronized void add(String testClassName, String testMethodName, TestTiming timing) {
+		entries.add(new Entry(testClassName, testMethodName, timing));
+	}
+
+	public synchronized boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Prints the given number of slowest tests, then the number of tests, the total and the maximum time per browser
+	 */
+	public synchronized void print(int slowestCount, PrintStream out) {
+		List<Entry> sorted = new ArrayList<Entry>(entries);
+		Collections.sort(sorted, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				long t1 = e1.timing.getTotalMillis();
+				long t2 = e2.timing.getTotalMillis();
+				return t1 < t2 ? 1 : t1 == t2 ? 0 : -1;
+			}
+		});
+
+		out.println("Slowest tests:");
+		for (Entry entry : sorted.subList(0, Math.min(slowestCount, sorted.size()))) {
+			TestTiming t = entry.timing;
+			out.println(String.format("%8d ms  %s.%s [%s] (wait %d ms, page load %d ms, run %d ms)", t.getTotalMillis(),
+					entry.testClassName, entry.testMethodName, t.getBrowser(), t.getWaitMillis(), t.getPageLoadMillis(),
+					t.getRunMillis()));
+		}
+
+		Map<String, long[]> browsers = new LinkedHashMap<String, long[]>();
+		for (Entry entry : entries) {
+			long[] stats = browsers.get(entry.timing.getBrowser());
+			if (stats == null) {
+				// count, total, max
+				stats = new long[3];
+				browsers.put(entry.timing.getBrowser(), stats);
+			}
+			long total = entry.timing.getTotalMillis();
+			stats[0]++;
+			stats[1] += total;
+			stats[2] = Math.max(stats[2], total);
+		}
+		out.println("Tests per browser:");
+		for (Map.Entry<String, long[]> browser : browsers.entrySet()) {
+			long[] stats = browser.getValue();
+			out.println(String.format("%8d tests, total %d ms, average %d ms, max %d ms [%s]", stats[0], stats[1],
+					stats[1] / stats[0], stats[2], browser.getKey()));
+		}
+	}
+
+	/**
+	 * Writes the timings in TIMINGS_DIRECTORY, in CSV and JSON formats. The name of the files contains the id of the
+	 * JVM, so that the forked JVMs don't overwrite each other's files.
+	 */
+	public synchronized void write() throws IOException {
+		if (!TIMINGS_DIRECTORY.exists() && !TIMINGS_DIRECTORY.mkdirs()) {
+			throw new IOException("Cannot create the directory " + TIMINGS_DIRECTORY);
+		}
+		String name = "timings-" + ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+
+		PrintWriter csv = new PrintWriter(new File(TIMINGS_DIRECTORY, name + ".csv"), Charsets.UTF_8.name());
+		try {
+			csv.println("class,method,browser,waitMillis,pageLoadMillis,runMillis,totalMillis");
+			for (Entry entry : entries) {
+				TestTiming t = entry.timing;
+				csv.println(entry.testClassName + "," + entry.testMethodName + "," + csvValue(t.getBrowser()) + ","
+						+ t.getWaitMillis() + "," + t.getPageLoadMillis() + "," + t.getRunMillis() + ","
+						+ t.getTotalMillis());
+			}
+		} finally {
+			csv.close();
+		}
+
+		PrintWriter json = new PrintWriter(new File(TIMINGS_DIRECTORY, name + ".json"), Charsets.UTF_8.name());
+		try {
+			json.println("[");
+			for (int i = 0; i < entries.size(); ++i) {
+				Entry entry = entries.get(i);
+				TestTiming t = entry.timing;
+				json.print("  {\"class\":" + jsonValue(entry.testClassName) + ",\"method\":"
+						+ jsonValue(entry.testMethodName) + ",\"browser\":" + jsonValue(t.getBrowser())
+						+ ",\"waitMillis\":" + t.getWaitMillis() + ",\"pageLoadMillis\":" + t.getPageLoadMillis()
+						+ ",\"runMillis\":" + t.getRunMillis() + ",\"totalMillis\":" + t.getTotalMillis() + "}");
+				json.println(i < entries.size() - 1 ? "," : "");
+			}
+			json.println("]");
+		} finally {
+			json.close();
+		}
+	}
+
+	private static String csvValue(String s) {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0) {
+			return s;
+		}
+		return "\"" + s.replace("\"", "\"\"") + "\"";
+	}
+
+	private static String jsonValue(String s) {
+		StringBuilder json = new StringBuilder(s.length() + 2);
+		json.append('"');
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < ' ') {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	private static class Entry {
+		private final String testClassName;
+		private final String testMethodName;
+		private final TestTiming timing;
+
+		Entry(String testClassName, String testMethodName, TestTiming timing) {
+			this.testClassName = testClassName;
+			this.testMethodName = testMethodName;
+			this.timing = timing;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package org.stjs.testing.driver.browser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import org.junit.runners.model.InitializationError;
+import org.stjs.testing.driver.BrowserFarm;
+import org.stjs.testing.driver.DriverConfiguration;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * A browser that is not started by this JVM, but borrowed from the BrowserFarm found at
+ * DriverConfiguration.getFarmAddress(). The farm sends the browser to the start page of this JVM. When there are no
+ * more tests, the browser goes back to the farm, ready to be lent to another JVM.
+ */
+@SuppressWarnings("restriction")
+public class FarmBrowser extends LongPollingBrowser {
+	private final String browserName;
+	private Socket farmConnection;
+	private String farmPageUrl;
+
+	public FarmBrowser(DriverConfiguration config, String browserName) {
+		super(config);
+		this.browserName = browserName;
+	}
+
+	/**
+	 * @return the name of the browser in the stjs.test.browsers property (i.e. its real type)
+	 */
+	public String getBrowserName() {
+		return browserName;
+	}
+
+	/**
+	 * Blocks until the farm has a browser of the right type available, and sent it to the start page of this JVM, or
+	 * until the timeout specified in DriverConfiguration.getWaitForBrowser() expires (e.g. when the other JVMs hold
+	 * all the browsers of this type).
+	 */
+	@Override
+	protected void doStart() throws InitializationError {
+		this.registerWithLongPollingServer();
+		try {
+			farmConnection = new Socket();
+			farmConnection.connect(getConfig().getFarmAddress(), getConfig().getWaitForBrowser() * 1000);
+			farmConnection.setSoTimeout(getConfig().getWaitForBrowser() * 1000);
+
+			Writer out = new OutputStreamWriter(farmConnection.getOutputStream(), Charsets.UTF_8);
+			out.write(BrowserFarm.LEASE + " " + browserName + " " + getStartPageUrl() + "\n");
+			out.flush();
+
+			BufferedReader in = new BufferedReader(new InputStreamReader(farmConnection.getInputStream(),
+					Charsets.UTF_8));
+			String response = in.readLine();
+			if ((response == null) || !response.startsWith(BrowserFarm.LEASED + " ")) {
+				throw new InitializationError("The browser farm at " + getConfig().getFarmAddress()
+						+ " could not lend a " + browserName + " browser: " + response);
+			}
+			farmPageUrl = response.substring(BrowserFarm.LEASED.length() + 1);
+		} catch (SocketTimeoutException e) {
+			closeFarmConnection();
+			throw new InitializationError("The browser farm at " + getConfig().getFarmAddress() + " had no " + browserName
+					+ " browser available after " + getConfig().getWaitForBrowser() + " seconds");
+		} catch (IOException e) {
+			closeFarmConnection();
+			throw new InitializationError(e);
+		} catch (InitializationError e) {
+			closeFarmConnection();
+			throw e;
+		}
+		if (getConfig().isDebugEnabled()) {
+			System.out.println("Browser " + getId() + " is a " + browserName + " borrowed from the browser farm");
+		}
+	}
+
+	/**
+	 * Sends the browser back to the farm
+	 */
+	@Override
+	public void sendNoMoreTestFixture(HttpExchange exchange) throws IOException {
+		sendRedirectFixture(farmPageUrl, exchange);
+	}
+
+	/**
+	 * Closing the connection gives the browser back to the farm
+	 */
+	@Override
+	public void stop() {
+		closeFarmConnection();
+	}
+
+	private void closeFarmConnection() {
+		if (farmConnection == null) {
+			return;
+		}
+		try {
+			farmConnection.close();
+		} catch (IOException e) {
+			// nothing to do, the farm gets the browser back anyway
+		}
+		farmConnection = null;
+	}
+}
@@ -2,14 +2,12 @@ package org.stjs.testing.driver.browser;
 
 import java.io.IOException;
 import java.io.StringWriter;
-import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Exchanger;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import org.junit.After;
 import org.junit.Before;
@@ -25,6 +23,7 @@ import org.stjs.generator.name.NameProvider;
 import org.stjs.generator.type.TypeWrapper;
 import org.stjs.generator.type.TypeWrappers;
 import org.stjs.testing.annotation.HTMLFixture;
+import org.stjs.testing.annotation.IsolatedTests;
 import org.stjs.testing.annotation.Scripts;
 import org.stjs.testing.annotation.ScriptsAfter;
 import org.stjs.testing.annotation.ScriptsBefore;
@@ -35,6 +34,7 @@ import org.stjs.testing.driver.JUnitSession;
 import org.stjs.testing.driver.MultiTestMethod;
 import org.stjs.testing.driver.StreamUtils;
 import org.stjs.testing.driver.TestResult;
+import org.stjs.testing.driver.TestTiming;
 
 import com.google.common.base.Strings;
 import com.sun.net.httpserver.HttpExchange;
@@ -44,7 +44,8 @@ import com.sun.net.httpserver.HttpExchange;
  * execute from the HTTP server. LongPollingBrowser handles multithreading synchronization between the browser, the HTTP
  * server and the JUnit runner. The JUnit runner notifies this browser that a new test method must be executed by
  * calling executeTest(MultiTestMethod), or that it has finished executing all the tests by calling notifyNoMoreTests().
- * The HTTP server waits for a new test to send to the browser by calling awaitNewTestReady(). <br>
+ * The HTTP server parks the request of the browser for a new test by calling awaitNextTest(NextTestListener), and the
+ * JUnit thread completes it. <br>
  * <br>
  * On top of that, LongPollinBrowser delegates the details of starting and stopping the browser itself to its concrete
  * subclasses.
@@ -54,8 +55,13 @@ import com.sun.net.httpserver.HttpExchange;
 @SuppressWarnings({ "restriction", "deprecation" })
 public abstract class LongPollingBrowser extends AbstractBrowser {
 
-	private final Exchanger<MultiTestMethod> exchanger = new Exchanger<MultiTestMethod>();
+	/**
+	 * the pending request of the browser for its next test, if any
+	 */
+	private final Object pollLock = new Object();
+	private NextTestListener parkedPoll;
 	private volatile MultiTestMethod methodUnderExecution = null;
+	private volatile TestTiming timingUnderExecution = null;
 	private long id;
 	private volatile boolean isDead = false;
 
@@ -71,6 +77,13 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 		return getConfig().getServerURL() + getStartPageUri(browserId, persistent);
 	}
 
+	/**
+	 * @return the page where this browser waits for its tests
+	 */
+	public String getStartPageUrl() {
+		return getStartPageUrl(id, false);
+	}
+
 	protected void registerWithLongPollingServer() {
 		this.id = JUnitSession.getInstance().getDependency(HttpLongPollingServer.class).registerBrowserSession(this);
 		if (getConfig().isDebugEnabled()) {
@@ -101,43 +114,111 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 	protected abstract void doStart() throws InitializationError;
 
 	/**
-	 * Blocks until JUnit notifies this browser session that either a new test must be executed (ie: executeTest() is
-	 * called), or there are no more tests (ie: notifyNoMoreTests() is called). If there is a new test to execute, then
-	 * this method returns it. If there are no more tests, this method returns null.<br>
+	 * Called when the browser asks for its next test. The request is parked, and the JUnit thread notifies the
+	 * listener as soon as it has a new test (ie: executeTest() is called), or there are no more tests (ie:
+	 * notifyNoMoreTests() is called). This method never blocks, so a waiting browser does not hold a thread of the HTTP
+	 * server.<br>
 	 * <br>
 	 * This method is typically called right after the results of the previous test were reported.
 	 * 
-	 * @return The next test to execute, or null if there isn't any
+	 * @param listener
+	 *            receives the next test to execute, or null if there isn't any
 	 */
-	public MultiTestMethod awaitNextTest() {
-		try {
-			if (getConfig().isDebugEnabled()) {
-				System.out.println("Browser " + this.id + " is waiting for a new test");
-			}
-
-			// We now wait for the JUnit thread to supply our thread with the next test.
+	public void awaitNextTest(NextTestListener listener) {
+		if (getConfig().isDebugEnabled()) {
+			System.out.println("Browser " + this.id + " is waiting for a new test");
+		}
+		NextTestListener replaced;
+		synchronized (pollLock) {
 			// there is no need to put a timeout here, because if JUnit fails to deliver a new test,
 			// this means that something really bad has happened and that the JUnit JVM will probably terminate very
 			// soon, executing all cleanup actions.
-			methodUnderExecution = exchanger.exchange(null);
+			replaced = parkedPoll;
+			parkedPoll = listener;
+			pollLock.notifyAll();
+		}
+		if (replaced != null) {
+			// the browser reconnected, nobody waits for the previous request anymore
+			replaced.cancel();
+		}
+	}
 
-			if (getConfig().isDebugEnabled()) {
-				if (methodUnderExecution != null) {
-					System.out.println("Browser " + this.id + " has picked up the test "
-							+ methodUnderExecution.getMethod().getMethod());
-				} else {
-					System.out.println("Browser " + this.id + " has no more tests");
+	/**
+	 * Waits for the browser to ask for a test and gives it the specified one (null if there are no more tests).
+	 * 
+	 * @return false if the browser did not ask for a test within the timeout specified in
+	 *         DriverConfiguration.getTestTimeout()
+	 */
+	private boolean handOver(MultiTestMethod method, TestTiming timing) throws InterruptedException {
+		NextTestListener listener = takeParkedPoll(TimeUnit.SECONDS.toMillis(getConfig().getTestTimeout()), method,
+				timing);
+		if (listener == null) {
+			return false;
+		}
+
+		if (getConfig().isDebugEnabled()) {
+			if (method != null) {
+				System.out.println("Browser " + this.id + " has picked up the test " + method.getMethod().getMethod());
+			} else {
+				System.out.println("Browser " + this.id + " has no more tests");
+			}
+		}
+		listener.nextTest(method);
+		return true;
+	}
+
+	/**
+	 * Waits for the browser to ask for a test and removes its request from the parked ones. The given method is the
+	 * method under execution from now on.
+	 * 
+	 * @return the parked request, or null if the browser did not ask for a test in time
+	 */
+	private NextTestListener takeParkedPoll(long timeoutMillis, MultiTestMethod method, TestTiming timing)
+			throws InterruptedException {
+		synchronized (pollLock) {
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			while (parkedPoll == null) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return null;
 				}
+				pollLock.wait(remaining);
+			}
+			NextTestListener listener = parkedPoll;
+			parkedPoll = null;
+			methodUnderExecution = method;
+			timingUnderExecution = timing;
+			return listener;
+		}
+	}
+
+	/**
+	 * Sends this browser to the given page, instead of a test. This is used by the BrowserFarm to lend a browser to a
+	 * JUnit JVM. This method blocks until the browser asks for a new test, or until the timeout specified in
+	 * DriverConfiguration.getWaitForBrowser() expires.
+	 * 
+	 * @return false if the browser did not ask for a test in time
+	 */
+	public boolean redirect(String url) {
+		try {
+			NextTestListener listener = takeParkedPoll(TimeUnit.SECONDS.toMillis(getConfig().getWaitForBrowser()), null,
+					null);
+			if (listener == null) {
+				return false;
 			}
-			return methodUnderExecution;
+			if (getConfig().isDebugEnabled()) {
+				System.out.println("Browser " + this.id + " is sent to " + url);
+			}
+			listener.redirect(url);
+			return true;
 		} catch (InterruptedException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
 	/**
-	 * Notifies this browser that the specified test must be executed. This method blocks until this browser picks up
-	 * the test by calling awaitNextTest(). If the browser does not pick up the test within the timeout specified in
+	 * Notifies this browser that the specified test must be executed. This method blocks until this browser asks for
+	 * a test by calling awaitNextTest(). If the browser does not ask for a test within the timeout specified in
 	 * DriverConfiguration.getTestTimeout(), then the browser is assumed to be dead. The test is failed, and the browser
 	 * does not receive any more tests at all.
 	 * 
@@ -154,16 +235,14 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 			if (getConfig().isDebugEnabled()) {
 				System.out.println("Test " + method.getMethod().getMethod() + " is available for browser " + this.id);
 			}
-			exchanger.exchange(method, getConfig().getTestTimeout(), TimeUnit.SECONDS);
-			if (getConfig().isDebugEnabled()) {
-				System.out.println("Browser " + this.id + " has picked up the new test");
+			TestTiming timing = new TestTiming(getClass().getSimpleName() + " " + this.id);
+			if (!handOver(method, timing)) {
+				// the browser failed to pick up the test in time.
+				this.markAsDead();
+				this.reportAsDead(method);
 			}
 		} catch (InterruptedException e) {
 			throw new RuntimeException(e);
-		} catch (TimeoutException e) {
-			// the browser failed to pick up the test in time.
-			this.markAsDead();
-			this.reportAsDead(method);
 		}
 	}
 
@@ -175,9 +254,9 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 	}
 
 	/**
-	 * Notifies this browser that there are no more tests to execute. This method blocks until this browser attempts to
-	 * pick up a new test by calling awaitNewTestReady(). If the browser does not attempt to pick up a new test within
-	 * the timeout specified in DriverConfiguration.getTestTimeout(), then the browser is assumed to be dead.
+	 * Notifies this browser that there are no more tests to execute. This method blocks until this browser asks for a
+	 * new test by calling awaitNextTest(). If the browser does not ask for a new test within the timeout specified in
+	 * DriverConfiguration.getTestTimeout(), then the browser is assumed to be dead.
 	 */
 	@Override
 	public void notifyNoMoreTests() {
@@ -188,12 +267,12 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 			if (getConfig().isDebugEnabled()) {
 				System.out.println("Browser " + this.id + " has been notified that no more tests are coming");
 			}
-			exchanger.exchange(null, getConfig().getTestTimeout(), TimeUnit.SECONDS);
+			if (!handOver(null, null)) {
+				// the browser failed to pick up the test in time.
+				this.markAsDead();
+			}
 		} catch (InterruptedException e) {
 			throw new RuntimeException(e);
-		} catch (TimeoutException e) {
-			// the browser failed to pick up the test in time.
-			this.markAsDead();
 		}
 	}
 
@@ -204,6 +283,33 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 		return methodUnderExecution;
 	}
 
+	/**
+	 * Completes the timing of the test currently being executed with the times measured by the browser ("loadTime" and
+	 * "runTime" query string parameters) and the reception of its result.
+	 * 
+	 * @return the timing, or null if no test is being executed
+	 */
+	public TestTiming completeTiming(Map<String, String> queryStringParameters) {
+		TestTiming timing = timingUnderExecution;
+		if (timing != null) {
+			timing.markReceived();
+			timing.setBrowserTimes(parseMillis(queryStringParameters.get("loadTime")),
+					parseMillis(queryStringParameters.get("runTime")));
+		}
+		return timing;
+	}
+
+	private static long parseMillis(String s) {
+		if (s == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(s);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
 	private String getTypeName(Class<?> clazz) {
 		// TODO have it inject it here
 		NameProvider names = new DefaultNameProvider();
@@ -223,8 +329,96 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 	 *            contains the HTTP response that must be written to
 	 */
 	public void sendTestFixture(MultiTestMethod meth, HttpExchange exchange) throws Exception {
+		TestClassFixture fixture = getTestClassFixture(meth);
+
+		StringBuilder resp = new StringBuilder(fixture.head.length() + fixture.tail.length() + 256);
+		resp.append(fixture.head);
+		resp.append("    stjsRunTest(" + getTestArguments(meth) + ");\n");
+		resp.append(fixture.tail);
+
+		markSent();
+		sendResponse(resp.toString(), exchange);
+	}
+
+	/**
+	 * @return the arguments of the stjsRunTest function of the fixture: the name of the method and the name of the
+	 *         expected exception (or null)
+	 */
+	private String getTestArguments(MultiTestMethod meth) {
+		final Test test = meth.getMethod().getAnnotation(Test.class);
+		String expectedException = test.expected() != Test.None.class ? "'" + getTypeName(test.expected()) + "'"
+				: "null";
+		return "'" + meth.getMethod().getName() + "', " + expectedException;
+	}
+
+	/**
+	 * @return true if the given test can be executed in the page already loaded for the test class with the given
+	 *         name, instead of loading a new page
+	 */
+	public boolean canExecuteInSamePage(MultiTestMethod meth, String testClassName) {
+		Class<?> testClass = meth.getTestClass().getJavaClass();
+		return testClass.getName().equals(testClassName) && isBatched(testClass);
+	}
+
+	private boolean isBatched(Class<?> testClass) {
+		return getConfig().isBatchEnabled() && testClass.getAnnotation(IsolatedTests.class) == null;
+	}
+
+	/**
+	 * Writes to the HTTP response the test to be executed by the page that is already loaded for its test class. The
+	 * response contains the arguments of the stjsRunTest function, one per line.
+	 */
+	public void sendBatchedTest(MultiTestMethod meth, HttpExchange exchange) throws IOException {
+		final Test test = meth.getMethod().getAnnotation(Test.class);
+		String expectedException = test.expected() != Test.None.class ? getTypeName(test.expected()) : "";
+		exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+		markSent();
+		sendResponse(meth.getMethod().getName() + "\n" + expectedException, exchange);
+	}
+
+	private void markSent() {
+		TestTiming timing = timingUnderExecution;
+		if (timing != null) {
+			timing.markSent();
+		}
+	}
+
+	/**
+	 * Writes to the HTTP response the answer telling the page that is already loaded that the next test needs a new
+	 * page. The browser then asks for the pending test with the "pending" parameter.
+	 */
+	public void sendReloadFixture(HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+		sendResponse("reload", exchange);
+	}
+
+	/**
+	 * Sends the page that makes the whole browser window (not only the test frame) load the given page.
+	 */
+	public void sendRedirectFixture(String url, HttpExchange exchange) throws IOException {
+		sendResponse("<html><body><script>top.location.href = " + toJavascriptString(url) + ";</script></body></html>",
+				exchange);
+	}
+
+	/**
+	 * Returns the parts of the fixture that are the same for all the tests of a class. They are built the first time a
+	 * test of the class is executed, by any browser, and kept by the HTTP server until the end of the session.
+	 */
+	private TestClassFixture getTestClassFixture(MultiTestMethod meth) throws Exception {
+		Class<?> testClass = meth.getTestClass().getJavaClass();
+		Map<Class<?>, TestClassFixture> testClassFixtures = JUnitSession.getInstance()
+				.getDependency(HttpLongPollingServer.class).getTestClassFixtures();
+		TestClassFixture fixture = testClassFixtures.get(testClass);
+		if (fixture == null) {
+			// if two browsers build the fixture at the same time, they build the same thing
+			fixture = buildTestClassFixture(meth);
+			testClassFixtures.put(testClass, fixture);
+		}
+		return fixture;
+	}
+
+	private TestClassFixture buildTestClassFixture(MultiTestMethod meth) throws Exception {
 		Class<?> testClass = meth.getTestClass().getJavaClass();
-		Method method = meth.getMethod().getMethod();
 		ClassWithJavascript stjsClass = new Generator().getExistingStjsClass(getConfig().getClassLoader(), testClass);
 
 		List<FrameworkMethod> beforeMethods = meth.getTestClass().getAnnotatedMethods(Before.class);
@@ -235,11 +429,12 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 		final Scripts addedScripts = testClass.getAnnotation(Scripts.class);
 		final ScriptsBefore addedScriptsBefore = testClass.getAnnotation(ScriptsBefore.class);
 		final ScriptsAfter addedScriptsAfter = testClass.getAnnotation(ScriptsAfter.class);
-		final Test test = meth.getMethod().getAnnotation(Test.class);
 
 		StringBuilder resp = new StringBuilder(8192);
 		resp.append("<html>\n");
 		resp.append("<head>\n");
+		// the time the page started loading, to measure the load time of the scripts
+		resp.append("<script language='javascript'>var stjsPageStart = new Date().getTime();</script>\n");
 		appendScriptTag(resp, "/stjs.js");
 		appendScriptTag(resp, "/junit.js");
 
@@ -284,27 +479,49 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 				appendScriptTag(resp, script);
 			}
 		}
-		resp.append("<script language='javascript'>\n");
-		resp.append("  window.onload=function(){\n");
-		// resp.append("    console.error(document.getElementsByTagName('html')[0].innerHTML);\n");
+		String fixtureHtml = "";
+		if (htmlFixture != null) {
+			if (!Strings.isNullOrEmpty(htmlFixture.value())) {
+				fixtureHtml = htmlFixture.value();
 
-		// Adapter between generated assert (not global) and JS-test-driver assert (which is a
-		// set of global methods)
-		resp.append("    Assert=window;\n");
+			} else if (!Strings.isNullOrEmpty(htmlFixture.url())) {
+				StringWriter writer = new StringWriter();
+				StreamUtils.copy(getConfig().getClassLoader(), htmlFixture.url(), writer);
+				fixtureHtml = writer.toString();
+			}
+		}
+		boolean batched = isBatched(testClass);
 
+		resp.append("<script language='javascript'>\n");
+		if (batched) {
+			// the following tests of the class run in the same page. They need the initial fixture and assert count
+			resp.append("  var stjsFixture = " + toJavascriptString(fixtureHtml) + ";\n");
+			resp.append("  var stjsTestCount = 0;\n");
+		}
 		String testedClassName = testClass.getSimpleName();
-		resp.append("    parent.startingTest('" + testedClassName + "', '" + method.getName() + "');");
+		resp.append("  function stjsRunTest(methodName, expectedExceptionName){\n");
+		resp.append("    parent.startingTest('" + testedClassName + "', methodName);");
+		// only the first test of the page waits for the page to load
+		resp.append("    var stjsStart = new Date().getTime();\n");
+		resp.append("    var stjsLoadTime = stjsPageStart ? stjsStart - stjsPageStart : 0;\n");
+		resp.append("    stjsPageStart = 0;\n");
+		if (batched) {
+			resp.append("    if (stjsTestCount++ > 0){\n");
+			resp.append("      document.body.innerHTML = stjsFixture;\n");
+			resp.append("      junit.assertCount = 0;\n");
+			resp.append("      junit.expectedAssertCount = 0;\n");
+			resp.append("    }\n");
+		}
 		resp.append("    var stjsTest = new " + testedClassName + "();\n");
 		resp.append("    var stjsResult = 'OK';\n");
-		resp.append("    var expectedException = "
-				+ (test.expected() != Test.None.class ? getTypeName(test.expected()) : null) + ";\n");
+		resp.append("    var expectedException = expectedExceptionName ? eval(expectedExceptionName) : null;\n");
 		resp.append("    try{\n");
 		// call before methods
 		for (FrameworkMethod beforeMethod : beforeMethods) {
 			resp.append("      stjsTest." + beforeMethod.getName() + "();\n");
 		}
 		// call the test's method
-		resp.append("      stjsTest." + method.getName() + "();\n");
+		resp.append("      stjsTest[methodName]();\n");
 		resp.append("      if(expectedException){\n");
 		resp.append("        stjsResult = 'Expected an exception, but none was thrown';\n");
 		resp.append("      }\n");
@@ -321,26 +538,65 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 		for (FrameworkMethod afterMethod : afterMethods) {
 			resp.append("     stjsTest." + afterMethod.getName() + "();\n");
 		}
-		resp.append("      parent.reportResultAndRunNextTest(stjsResult, stjsResult.location);\n");
+		// in batch mode, the page asks for the next test of the same class, without being reloaded
+		resp.append("      parent.reportResultAndRunNextTest(stjsResult, stjsResult.location, false, "
+				+ (batched ? "'" + testClass.getName() + "'" : "null")
+				+ ", stjsLoadTime, new Date().getTime() - stjsStart);\n");
 		resp.append("     }\n");
 		resp.append("  }\n");
+
+		resp.append("  window.onload=function(){\n");
+		// resp.append("    console.error(document.getElementsByTagName('html')[0].innerHTML);\n");
+
+		// Adapter between generated assert (not global) and JS-test-driver assert (which is a
+		// set of global methods)
+		resp.append("    Assert=window;\n");
+		String head = resp.toString();
+
+		resp.setLength(0);
+		resp.append("  }\n");
 		resp.append("</script>\n");
 		resp.append("</head>\n");
 		resp.append("<body>\n");
-		if (htmlFixture != null) {
-			if (!Strings.isNullOrEmpty(htmlFixture.value())) {
-				resp.append(htmlFixture.value());
-
-			} else if (!Strings.isNullOrEmpty(htmlFixture.url())) {
-				StringWriter writer = new StringWriter();
-				StreamUtils.copy(getConfig().getClassLoader(), htmlFixture.url(), writer);
-				resp.append(writer.toString());
-			}
-		}
+		resp.append(fixtureHtml);
 		resp.append("</body>\n");
 		resp.append("</html>\n");
 
-		sendResponse(resp.toString(), exchange);
+		return new TestClassFixture(head, resp.toString());
+	}
+
+	/**
+	 * @return the given string as a Javascript string literal, that can also be put inside a script tag
+	 */
+	private static String toJavascriptString(String s) {
+		StringBuilder js = new StringBuilder(s.length() + 16);
+		js.append('\'');
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '\'':
+			case '\\':
+			case '/':
+				js.append('\\').append(c);
+				break;
+			case '\n':
+				js.append("\\n");
+				break;
+			case '\r':
+				js.append("\\r");
+				break;
+			case '\u2028':
+				js.append("\\u2028");
+				break;
+			case '\u2029':
+				js.append("\\u2029");
+				break;
+			default:
+				js.append(c);
+			}
+		}
+		js.append('\'');
+		return js.toString();
 	}
 
 	/**
@@ -375,4 +631,41 @@ public abstract class LongPollingBrowser extends AbstractBrowser {
 	public long getId() {
 		return this.id;
 	}
+
+	/**
+	 * the HTML page sent to the browser for the tests of a class: the script tags (their order is expensive to
+	 * compute), the function running a test and the HTML fixture. Only the call of the function in window.onload,
+	 * between the head and the tail, depends on the test method.
+	 */
+	public static final class TestClassFixture {
+		private final String head;
+		private final String tail;
+
+		private TestClassFixture(String head, String tail) {
+			this.head = head;
+			this.tail = tail;
+		}
+	}
+
+	/**
+	 * Receives the next test for a browser that asked for it with awaitNextTest()
+	 */
+	public interface NextTestListener {
+		/**
+		 * @param method
+		 *            the test to execute, or null if there are no more tests
+		 */
+		public void nextTest(MultiTestMethod method);
+
+		/**
+		 * @param url
+		 *            the page the browser must load instead of a test
+		 */
+		public void redirect(String url);
+
+		/**
+		 * the browser made a new request and this one will never receive a test
+		 */
+		public void cancel();
+	}
 }
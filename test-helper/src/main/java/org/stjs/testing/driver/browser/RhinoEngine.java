@@ -0,0 +1,187 @@
+package org.stjs.testing.driver.browser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runners.model.InitializationError;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptableObject;
+import org.stjs.testing.driver.AsyncProcess;
+import org.stjs.testing.driver.DriverConfiguration;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Holds what the instances of {@link RhinoEngineBrowser} share during a session: the sealed scope with the standard
+ * objects, the compiled scripts and the threads running the tests. Everything is built with the class loader of the
+ * session, and dropped when the session stops.<br>
+ * <br>
+ * Only immutable things are shared between the tests, that may run in parallel: the standard objects are sealed, and
+ * stjs.js, whose functions keep some state (e.g. the converters of the JSON types), is executed again in the scope of
+ * each test.
+ */
+public class RhinoEngine implements AsyncProcess {
+	private static final ContextFactory contextFactory = new ContextFactory() {
+		@Override
+		protected boolean hasFeature(Context cx, int featureIndex) {
+			if (featureIndex == Context.FEATURE_DYNAMIC_SCOPE) {
+				// the functions of the shared scope see the variables of the scope of the test that calls them
+				return true;
+			}
+			return super.hasFeature(cx, featureIndex);
+		}
+
+		@Override
+		protected Context makeContext() {
+			Context cx = super.makeContext();
+			cx.setOptimizationLevel(9);
+			cx.setLanguageVersion(Context.VERSION_1_5);
+			return cx;
+		}
+	};
+
+	/**
+	 * junit.js only needs a document to check if the values are DOM elements
+	 */
+	private static final String SHARED_SCRIPT = "function print(message) {java.lang.System.out.println(message);}\n"
+			+ "var document = {createElement: function(){ return {}; }};\n";
+
+	private final DriverConfiguration config;
+	private final ConcurrentMap<String, Script> compiledScripts = new ConcurrentHashMap<String, Script>();
+	private final ConcurrentMap<Class<?>, TestClassScripts> testClassScripts =
+			new ConcurrentHashMap<Class<?>, TestClassScripts>();
+	private final ExecutorService executor;
+	private volatile ScriptableObject sharedScope;
+
+	public RhinoEngine(DriverConfiguration config) {
+		this.config = config;
+		// there are never more tests running than instances of RhinoEngineBrowser, as each instance runs one test at a
+		// time
+		this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private AtomicInteger i = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setName("rhinoEngine-" + i.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	@Override
+	public void start() throws InitializationError {
+		Context cx = enterContext();
+		try {
+			// the prototypes of the standard objects (Array, Object, ...) cannot be modified by the scripts of a test
+			ScriptableObject scope = cx.initStandardObjects(null, true);
+			cx.evaluateString(scope, SHARED_SCRIPT, "shared", 1, null);
+			scope.sealObject();
+			// compiled once for all the tests
+			getScript(cx, "/stjs.js");
+			sharedScope = scope;
+		} catch (Exception e) {
+			throw new InitializationError(e);
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Override
+	public void stop() {
+		executor.shutdown();
+		sharedScope = null;
+		compiledScripts.clear();
+		testClassScripts.clear();
+	}
+
+	Context enterContext() {
+		return contextFactory.enterContext();
+	}
+
+	/**
+	 * @return the sealed scope containing the standard objects
+	 */
+	ScriptableObject getSharedScope() {
+		return sharedScope;
+	}
+
+	/**
+	 * @return the threads running the tests, so that the JUnit thread dispatching a test is not blocked until its end
+	 */
+	ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @return the compiled scripts of the given test class, or null if no test of the class was executed yet
+	 */
+	TestClassScripts getTestClassScripts(Class<?> testClass) {
+		return testClassScripts.get(testClass);
+	}
+
+	void putTestClassScripts(Class<?> testClass, TestClassScripts scripts) {
+		testClassScripts.put(testClass, scripts);
+	}
+
+	/**
+	 * @return the compiled script found at the given path in the class path. Each script is compiled once per session.
+	 */
+	Script getScript(Context cx, String path) throws IOException, URISyntaxException {
+		Script script = compiledScripts.get(path);
+		if (script != null) {
+			return script;
+		}
+
+		// same cleanup as for the URLs of the scripts served to the real browsers
+		String cleanPath = path.replace("classpath://", "/").replaceFirst("file:/+target", "target");
+		String resourcePath = new URI(cleanPath).getPath();
+		if (resourcePath == null) {
+			throw new IllegalArgumentException("Wrong path in uri:" + cleanPath);
+		}
+		if (!resourcePath.startsWith("/")) {
+			resourcePath = "/" + resourcePath;
+		}
+		InputStream in = config.getClassLoader().getResourceAsStream(resourcePath.substring(1));
+		if (in == null) {
+			throw new IOException(cleanPath + " was not found in classpath");
+		}
+		Reader reader = new InputStreamReader(in, Charsets.UTF_8);
+		try {
+			// the source name is the path of the script, so that the stack traces can be mapped to the Java code
+			script = cx.compileReader(reader, resourcePath, 1, null);
+		} finally {
+			reader.close();
+		}
+		compiledScripts.put(path, script);
+		return script;
+	}
+
+	/**
+	 * the scripts of a test class: its dependencies, in the order of the page of the test in a real browser, and the
+	 * function running one of its tests
+	 */
+	static class TestClassScripts {
+		final List<Script> dependencies;
+		final Script runner;
+
+		TestClassScripts(List<Script> dependencies, Script runner) {
+			this.dependencies = dependencies;
+			this.runner = runner;
+		}
+	}
+}
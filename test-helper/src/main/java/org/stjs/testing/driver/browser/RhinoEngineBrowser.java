@@ -0,0 +1,290 @@
+package org.stjs.testing.driver.browser;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptStackElement;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.stjs.generator.BridgeClass;
+import org.stjs.generator.ClassWithJavascript;
+import org.stjs.generator.DependencyCollection;
+import org.stjs.generator.Generator;
+import org.stjs.generator.name.DefaultNameProvider;
+import org.stjs.generator.type.TypeWrappers;
+import org.stjs.testing.annotation.Scripts;
+import org.stjs.testing.annotation.ScriptsAfter;
+import org.stjs.testing.annotation.ScriptsBefore;
+import org.stjs.testing.driver.AsyncProcess;
+import org.stjs.testing.driver.DriverConfiguration;
+import org.stjs.testing.driver.JUnitSession;
+import org.stjs.testing.driver.MultiTestMethod;
+import org.stjs.testing.driver.TestResult;
+import org.stjs.testing.driver.TestTiming;
+import org.stjs.testing.driver.browser.RhinoEngine.TestClassScripts;
+
+/**
+ * This browser runs the tests directly in Rhino, inside the virtual machine, without HTTP server and without DOM. It
+ * is meant for the tests of pure logic (the tests with an HTMLFixture or using the DOM need a real browser). Start
+ * several instances (e.g. rhinoEngine*8 in stjs.test.browsers) to run the tests on all the cores.<br>
+ * <br>
+ * The standard objects are loaded once in a sealed scope that is shared by all the instances (see {@link RhinoEngine}).
+ * Each test runs in its own scope that inherits from the shared one (thanks to Rhino's dynamic scopes), where stjs.js,
+ * junit.js and the scripts of the test class are executed. All the scripts are compiled once per session.
+ */
+public class RhinoEngineBrowser extends AbstractBrowser {
+	private static final String USER_AGENT = "Rhino engine";
+	private static final AtomicInteger instanceCount = new AtomicInteger(0);
+
+	private final int id = instanceCount.getAndIncrement();
+	private RhinoEngine engine;
+
+	public RhinoEngineBrowser(DriverConfiguration config) {
+		super(config);
+	}
+
+	@Override
+	public void start() throws InitializationError {
+		// the engine is a shared dependency, already started by the session
+		engine = JUnitSession.getInstance().getDependency(RhinoEngine.class);
+	}
+
+	/**
+	 * Runs the test in one of the threads of the engine, so that the JUnit thread can already send the test to the other
+	 * browsers.
+	 */
+	@Override
+	public void executeTest(final MultiTestMethod method) {
+		final TestTiming timing = new TestTiming(getClass().getSimpleName() + " " + id);
+		engine.getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				TestResult result = runTest(method, timing);
+				timing.markReceived();
+				result.setTiming(timing);
+				method.notifyExecutionResult(result);
+			}
+		});
+	}
+
+	private TestResult runTest(MultiTestMethod method, TestTiming timing) {
+		Class<?> testClass = method.getTestClass().getJavaClass();
+		Context cx = engine.enterContext();
+		long loadStart = 0;
+		long runStart = 0;
+		try {
+			TestClassScripts scripts = getTestClassScripts(method);
+			// the "page load" is the execution of the scripts in the scope of the test
+			timing.markSent();
+			loadStart = System.currentTimeMillis();
+			Scriptable scope = newTestScope(cx);
+			for (Script script : scripts.dependencies) {
+				script.exec(cx, scope);
+			}
+			Function runner = (Function) scripts.runner.exec(cx, scope);
+			runStart = System.currentTimeMillis();
+			Object result = runner.call(cx, scope, scope, new Object[] { method.getMethod().getName(),
+					getExpectedException(method) });
+			String message = Context.toString(result);
+			return new TestResult(USER_AGENT, message, "OK".equals(message) ? null : getLocation(testClass, null),
+					false);
+
+		} catch (RhinoException e) {
+			return new TestResult(USER_AGENT, e.details(), getLocation(testClass, e), isAssert(e));
+		} catch (Exception e) {
+			return new TestResult(USER_AGENT, e.toString(), getLocation(testClass, null), false);
+		} finally {
+			Context.exit();
+			long end = System.currentTimeMillis();
+			if (runStart != 0) {
+				timing.setBrowserTimes(runStart - loadStart, end - runStart);
+			} else if (loadStart != 0) {
+				timing.setBrowserTimes(end - loadStart, -1);
+			}
+		}
+	}
+
+	/**
+	 * @return the scope where a test runs: it inherits the standard objects of the shared scope, and has its own stjs
+	 *         object, so that the namespaces, the settings and the caches of stjs.js are not shared with the other tests
+	 */
+	private Scriptable newTestScope(Context cx) throws IOException, URISyntaxException {
+		Scriptable shared = engine.getSharedScope();
+		Scriptable scope = cx.newObject(shared);
+		scope.setPrototype(shared);
+		scope.setParentScope(null);
+
+		engine.getScript(cx, "/stjs.js").exec(cx, scope);
+		Scriptable stjs = (Scriptable) scope.get("stjs", scope);
+		stjs.put("mainCallDisabled", stjs, Boolean.TRUE);
+
+		// Adapter between generated assert (not global) and JS-test-driver assert (which is a set of global methods)
+		scope.put("window", scope, scope);
+		scope.put("Assert", scope, scope);
+		return scope;
+	}
+
+	/**
+	 * Returns the compiled scripts of the test class. They are built the first time a test of the class is executed, by
+	 * any instance, and kept for the whole session.
+	 */
+	private TestClassScripts getTestClassScripts(MultiTestMethod method) throws IOException, URISyntaxException {
+		Class<?> testClass = method.getTestClass().getJavaClass();
+		TestClassScripts scripts = engine.getTestClassScripts(testClass);
+		if (scripts == null) {
+			// if two instances build the scripts at the same time, they build the same thing
+			scripts = buildTestClassScripts(method);
+			engine.putTestClassScripts(testClass, scripts);
+		}
+		return scripts;
+	}
+
+	private TestClassScripts buildTestClassScripts(MultiTestMethod method) throws IOException, URISyntaxException {
+		Class<?> testClass = method.getTestClass().getJavaClass();
+		ClassWithJavascript stjsClass = new Generator().getExistingStjsClass(getConfig().getClassLoader(), testClass);
+
+		final Scripts addedScripts = testClass.getAnnotation(Scripts.class);
+		final ScriptsBefore addedScriptsBefore = testClass.getAnnotation(ScriptsBefore.class);
+		final ScriptsAfter addedScriptsAfter = testClass.getAnnotation(ScriptsAfter.class);
+
+		// same order as the scripts of the page of the test in a real browser
+		Set<String> paths = new LinkedHashSet<String>();
+		paths.add("/junit.js");
+		if (addedScripts != null) {
+			Collections.addAll(paths, addedScripts.value());
+		}
+		if (addedScriptsBefore != null) {
+			Collections.addAll(paths, addedScriptsBefore.value());
+		}
+		for (ClassWithJavascript dep : new DependencyCollection(stjsClass).orderAllDependencies(getConfig()
+				.getClassLoader())) {
+			if (addedScripts != null && dep instanceof BridgeClass) {
+				// bridge dependencies are not added when using @Scripts
+				continue;
+			}
+			for (URI file : dep.getJavascriptFiles()) {
+				paths.add(file.toString());
+			}
+		}
+		if (addedScriptsAfter != null) {
+			Collections.addAll(paths, addedScriptsAfter.value());
+		}
+
+		Context cx = engine.enterContext();
+		try {
+			List<Script> dependencies = new ArrayList<Script>(paths.size());
+			for (String path : paths) {
+				dependencies.add(engine.getScript(cx, path));
+			}
+			Script runner = cx.compileString(buildRunner(method), testClass.getName() + "-runner", 1, null);
+			return new TestClassScripts(dependencies, runner);
+		} finally {
+			Context.exit();
+		}
+	}
+
+	/**
+	 * @return the script of the function that runs a test of the class and returns its result. The unexpected exceptions
+	 *         are thrown, so that their Javascript stack is known.
+	 */
+	private String buildRunner(MultiTestMethod method) {
+		StringBuilder js = new StringBuilder(512);
+		js.append("(function(methodName, expectedExceptionName){\n");
+		js.append("  var stjsTest = new " + method.getTestClass().getJavaClass().getSimpleName() + "();\n");
+		js.append("  var expectedException = expectedExceptionName ? eval(expectedExceptionName) : null;\n");
+		js.append("  try{\n");
+		js.append("    try{\n");
+		for (FrameworkMethod beforeMethod : method.getTestClass().getAnnotatedMethods(Before.class)) {
+			js.append("      stjsTest." + beforeMethod.getName() + "();\n");
+		}
+		js.append("      stjsTest[methodName]();\n");
+		js.append("    }catch(ex){\n");
+		js.append("      if(expectedException && stjs.isInstanceOf(ex.constructor,expectedException)){\n");
+		js.append("        return 'OK';\n");
+		js.append("      }\n");
+		js.append("      throw ex;\n");
+		js.append("    }\n");
+		js.append("    return expectedException ? 'Expected an exception, but none was thrown' : 'OK';\n");
+		js.append("  }finally{\n");
+		for (FrameworkMethod afterMethod : method.getTestClass().getAnnotatedMethods(After.class)) {
+			js.append("    stjsTest." + afterMethod.getName() + "();\n");
+		}
+		js.append("  }\n");
+		js.append("})");
+		return js.toString();
+	}
+
+	private Object getExpectedException(MultiTestMethod method) {
+		Test test = method.getMethod().getAnnotation(Test.class);
+		if (test.expected() == Test.None.class) {
+			return null;
+		}
+		return new DefaultNameProvider().getTypeName(TypeWrappers.wrap(test.expected()));
+	}
+
+	/**
+	 * @return true if the exception was thrown by one of the asserts of junit.js
+	 */
+	private boolean isAssert(RhinoException e) {
+		if (e instanceof JavaScriptException) {
+			Object value = ((JavaScriptException) e).getValue();
+			if (value instanceof Scriptable) {
+				return "AssertError".equals(ScriptableObject.getProperty((Scriptable) value, "name"));
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the location of the error in the format of stacktrace.js (with ';' between the lines), as expected by
+	 *         TestResult
+	 */
+	private String getLocation(Class<?> testClass, RhinoException e) {
+		StringBuilder location = new StringBuilder();
+		if (e != null) {
+			for (ScriptStackElement element : e.getScriptStack()) {
+				if (location.length() > 0) {
+					location.append(';');
+				}
+				String function = element.functionName != null ? element.functionName : "anonymous";
+				String file = element.fileName.startsWith("/") ? element.fileName.substring(1) : element.fileName;
+				location.append("at " + function + " (" + getConfig().getServerURL() + file + ":" + element.lineNumber
+						+ ":1)");
+			}
+		}
+		if (location.length() == 0) {
+			// without any Javascript stack, the error is reported on the test class
+			location.append("at " + testClass.getSimpleName() + " (" + getConfig().getServerURL()
+					+ testClass.getName().replace('.', '/') + ".js:1:1)");
+		}
+		return location.toString();
+	}
+
+	@Override
+	public void notifyNoMoreTests() {
+		// nothing to clean up, the threads running the tests are stopped with the engine
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Set<Class<? extends AsyncProcess>> getSharedDependencies() {
+		return processSet(RhinoEngine.class);
+	}
+}
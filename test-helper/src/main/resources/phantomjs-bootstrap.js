@@ -6,12 +6,14 @@ var iframe = document.createElement('iframe');
 document.body.appendChild(iframe);
 
 
-function reportResultAndRunNextTest(result, stacktrace){
+function reportResultAndRunNextTest(result, stacktrace, firstTest, batchClassName, loadTime, runTime){
 	console.error('reporting test result');
 	iframe.src = testServer + 'getNextTest' + 
 			'?browserId=' + browserId + 
 			'&result=' + result + 
 			'&location=' + stacktrace + 
+			'&loadTime=' + (loadTime || 0) + 
+			'&runTime=' + (runTime || 0) + 
 			'&rand=' + Math.random();
 }
 
@@ -0,0 +1,9 @@
+package org.stjs.testing.driver.browser;
+
+import org.stjs.javascript.Array;
+
+public class JsonItem {
+	public String name;
+	public JsonItem child;
+	public Array<JsonItem> children;
+}
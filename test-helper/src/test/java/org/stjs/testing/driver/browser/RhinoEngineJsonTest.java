@@ -0,0 +1,45 @@
+package org.stjs.testing.driver.browser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.stjs.javascript.Global.stjs;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.stjs.javascript.Array;
+import org.stjs.testing.driver.STJSTestDriverRunner;
+
+/**
+ * The tests of this class run in parallel in the instances of the Rhino engine. Each of them executes the script of
+ * JsonItem again, so the objects built by stjs.parseJSON must be instances of the JsonItem constructor of the test
+ * running, not of the one of the first test that converted a JsonItem.
+ */
+@RunWith(STJSTestDriverRunner.class)
+public class RhinoEngineJsonTest {
+	@Test
+	public void testParseJSON() {
+		JsonItem item = stjs.parseJSON("{\"name\":\"a\", \"child\":{\"name\":\"b\"}}", JsonItem.class);
+		assertTrue(item instanceof JsonItem);
+		assertTrue(item.child instanceof JsonItem);
+		assertEquals("b", item.child.name);
+	}
+
+	@Test
+	public void testParseJSONArray() {
+		JsonItem item = stjs.parseJSON(
+				"{\"children\":[{\"name\":\"a\"}, {\"name\":\"b\", \"child\":{\"name\":\"c\"}}]}", JsonItem.class);
+		Array<JsonItem> items = item.children;
+		assertEquals(2, items.$length());
+		assertTrue(items.$get(0) instanceof JsonItem);
+		assertTrue(items.$get(1).child instanceof JsonItem);
+		assertEquals("c", items.$get(1).child.name);
+	}
+
+	@Test
+	public void testParseJSONAgain() {
+		JsonItem item = stjs.parseJSON("{\"name\":\"d\", \"child\":{\"name\":\"e\"}}", JsonItem.class);
+		assertTrue(item instanceof JsonItem);
+		assertTrue(item.child instanceof JsonItem);
+		assertEquals("e", item.child.name);
+	}
+}